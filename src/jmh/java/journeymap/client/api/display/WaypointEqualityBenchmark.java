@@ -0,0 +1,223 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import com.google.common.base.Objects;
+import net.minecraft.core.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares GUID-based {@link Waypoint#equals(Object)}/{@link Waypoint#hashCode()} and
+ * {@link Waypoint#contentEquals(journeymap.client.api.model.WaypointBase)} against the getter-walking versions
+ * they replaced, which are reproduced here as {@link LegacyKey}.  Run with {@code ./gradlew jmh} and
+ * {@code -prof gc} to see allocation rates as well.
+ * <p>
+ * Lookups use separate but equal instances, so that equals() can't take the reference-equality shortcut.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaypointEqualityBenchmark
+{
+    private static final int COUNT = 100_000;
+    private static final String[] DIMENSIONS = {"minecraft:overworld", "minecraft:the_nether", "minecraft:the_end"};
+
+    private List<Waypoint> waypoints;
+    private List<Waypoint> copies;
+    private Set<Waypoint> waypointSet;
+    private List<LegacyKey> legacyKeys;
+    private List<LegacyKey> legacyCopies;
+    private Set<LegacyKey> legacySet;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        waypoints = create(new Random(42));
+        copies = create(new Random(42));
+        waypointSet = new HashSet<>(waypoints);
+
+        legacyKeys = new ArrayList<>(COUNT);
+        legacyCopies = new ArrayList<>(COUNT);
+        for (int i = 0; i < COUNT; i++)
+        {
+            legacyKeys.add(new LegacyKey(waypoints.get(i)));
+            legacyCopies.add(new LegacyKey(copies.get(i)));
+        }
+        legacySet = new HashSet<>(legacyKeys);
+    }
+
+    private static List<Waypoint> create(final Random random)
+    {
+        final List<Waypoint> result = new ArrayList<>(COUNT);
+        for (int i = 0; i < COUNT; i++)
+        {
+            final String dimension = DIMENSIONS[random.nextInt(DIMENSIONS.length)];
+            final BlockPos pos = new BlockPos(random.nextInt(60000) - 30000, random.nextInt(256), random.nextInt(60000) - 30000);
+            result.add(new Waypoint("benchmark", "waypoint-" + i, "Waypoint " + i, dimension, pos)
+                    .setColor(random.nextInt(0xffffff))
+                    .setDisplayDimensions(dimension));
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int hashSetContains()
+    {
+        int found = 0;
+        for (final Waypoint copy : copies)
+        {
+            if (waypointSet.contains(copy))
+            {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int legacyHashSetContains()
+    {
+        int found = 0;
+        for (final LegacyKey copy : legacyCopies)
+        {
+            if (legacySet.contains(copy))
+            {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int contentEquals()
+    {
+        int same = 0;
+        for (int i = 0; i < COUNT; i++)
+        {
+            if (waypoints.get(i).contentEquals(copies.get(i)))
+            {
+                same++;
+            }
+        }
+        return same;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int legacyEquals()
+    {
+        int same = 0;
+        for (int i = 0; i < COUNT; i++)
+        {
+            if (legacyKeys.get(i).equals(legacyCopies.get(i)))
+            {
+                same++;
+            }
+        }
+        return same;
+    }
+
+    /**
+     * Wraps a waypoint with the equals() and hashCode() Waypoint used to have.
+     */
+    static final class LegacyKey
+    {
+        final Waypoint waypoint;
+
+        LegacyKey(final Waypoint waypoint)
+        {
+            this.waypoint = waypoint;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof LegacyKey))
+            {
+                return false;
+            }
+            final Waypoint a = waypoint;
+            final Waypoint b = ((LegacyKey) o).waypoint;
+            // Displayable
+            if (!(Objects.equal(a.getModId(), b.getModId()) &&
+                    Objects.equal(a.getDisplayType(), b.getDisplayType()) &&
+                    Objects.equal(a.getId(), b.getId())))
+            {
+                return false;
+            }
+            // WaypointBase
+            if (!(Objects.equal(a.getName(), b.getName()) &&
+                    Objects.equal(a.getIcon(), b.getIcon()) &&
+                    Objects.equal(a.getColor(), b.getColor()) &&
+                    Objects.equal(a.getBackgroundColor(), b.getBackgroundColor()) &&
+                    Arrays.equals(a.getDisplayDimensions(), b.getDisplayDimensions())))
+            {
+                return false;
+            }
+            // Waypoint
+            return a.isPersistent() == b.isPersistent() &&
+                    a.isEditable() == b.isEditable() &&
+                    Objects.equal(a.getDimension(), b.getDimension()) &&
+                    Objects.equal(a.getColor(), b.getColor()) &&
+                    Objects.equal(a.getBackgroundColor(), b.getBackgroundColor()) &&
+                    Objects.equal(a.getName(), b.getName()) &&
+                    Objects.equal(a.getPosition(), b.getPosition()) &&
+                    Objects.equal(a.getIcon(), b.getIcon()) &&
+                    Arrays.equals(a.getDisplayDimensions(), b.getDisplayDimensions());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(Objects.hashCode(waypoint.getModId(), waypoint.getDisplayType(), waypoint.getId()),
+                    waypoint.getName());
+        }
+    }
+}
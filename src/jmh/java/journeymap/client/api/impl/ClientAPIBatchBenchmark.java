@@ -0,0 +1,107 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+
+package journeymap.client.api.impl;
+
+import journeymap.client.api.display.Overlay;
+import journeymap.client.api.display.PolygonOverlay;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.ShapeProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares submitting overlays to {@link MockClientAPI} one at a time with {@code show} and {@code remove} against
+ * one {@code showAll} and {@code removeAll} per batch, as a mod does for its claims when a player joins.  Each
+ * operation shows and then removes every overlay, so the mock is back where it started.
+ * Run with {@code ./gradlew jmh -PjmhInclude=ClientAPIBatch}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientAPIBatchBenchmark
+{
+    private static final String MOD_ID = "batchbenchmark";
+
+    @Param({"1000", "10000"})
+    public int overlayCount;
+
+    private MockClientAPI api;
+    private List<Overlay> overlays;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        api = MockClientAPI.INSTANCE;
+        api.removeAll(MOD_ID);
+
+        // One chunk-sized square per overlay, in rows of 100
+        final ShapeProperties shapeProperties = new ShapeProperties();
+        overlays = new ArrayList<>(overlayCount);
+        for (int i = 0; i < overlayCount; i++)
+        {
+            final int x = (i % 100) << 4;
+            final int z = (i / 100) << 4;
+            final MapPolygon square = new MapPolygon(new int[]{x, x + 16, x + 16, x}, new int[]{z + 16, z + 16, z, z}, 64);
+            overlays.add(new PolygonOverlay(MOD_ID, "claim" + i, net.minecraft.world.level.Level.OVERWORLD,
+                    shapeProperties, square));
+        }
+    }
+
+    @Benchmark
+    public int showAndRemoveEach()
+    {
+        for (final Overlay overlay : overlays)
+        {
+            api.show(overlay);
+        }
+        for (final Overlay overlay : overlays)
+        {
+            api.remove(overlay);
+        }
+        return overlays.size();
+    }
+
+    @Benchmark
+    public int showAndRemoveAll()
+    {
+        api.showAll(overlays);
+        api.removeAll(overlays);
+        return overlays.size();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.IClientAPI;
+import journeymap.client.api.IClientPlugin;
+import journeymap.client.api.event.ClientEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ClientEventDispatcher} against scanning every plugin and looking up its subscription, with
+ * 50 plugins.  Every fifth plugin is subscribed to {@link ClientEvent.Type#MAP_MOUSE_MOVED}, all of them to
+ * {@link ClientEvent.Type#DISPLAY_UPDATE}, and none to {@link ClientEvent.Type#REGISTRY}.  Timings are disabled
+ * so that only the dispatch itself is compared with the scan.
+ * Run with {@code ./gradlew jmh -PjmhInclude=ClientEventDispatch} and {@code -prof gc} to see allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientEventDispatchBenchmark
+{
+    private static final int PLUGINS = 50;
+
+    private ClientEventDispatcher dispatcher;
+    private Map<String, IClientPlugin> plugins;
+    private Map<String, EnumSet<ClientEvent.Type>> subscriptions;
+
+    private ClientEvent mouseMoved;
+    private ClientEvent displayUpdate;
+    private ClientEvent registry;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        dispatcher = new ClientEventDispatcher();
+        dispatcher.getTimings().setEnabled(false);
+        plugins = new HashMap<>();
+        subscriptions = new HashMap<>();
+        for (int i = 0; i < PLUGINS; i++)
+        {
+            final CountingPlugin plugin = new CountingPlugin("plugin" + i);
+            final EnumSet<ClientEvent.Type> types = (i % 5 == 0)
+                    ? EnumSet.of(ClientEvent.Type.DISPLAY_UPDATE, ClientEvent.Type.MAP_MOUSE_MOVED)
+                    : EnumSet.of(ClientEvent.Type.DISPLAY_UPDATE, ClientEvent.Type.WAYPOINT);
+
+            dispatcher.register(plugin);
+            dispatcher.subscribe(plugin.getModId(), types);
+            plugins.put(plugin.getModId(), plugin);
+            subscriptions.put(plugin.getModId(), types);
+        }
+
+        mouseMoved = new ClientEvent(ClientEvent.Type.MAP_MOUSE_MOVED);
+        displayUpdate = new ClientEvent(ClientEvent.Type.DISPLAY_UPDATE);
+        registry = new ClientEvent(ClientEvent.Type.REGISTRY);
+    }
+
+    @Benchmark
+    public boolean dispatchMouseMoved()
+    {
+        return dispatcher.dispatch(mouseMoved);
+    }
+
+    @Benchmark
+    public boolean scanMouseMoved()
+    {
+        return scan(mouseMoved);
+    }
+
+    @Benchmark
+    public boolean dispatchDisplayUpdate()
+    {
+        return dispatcher.dispatch(displayUpdate);
+    }
+
+    @Benchmark
+    public boolean scanDisplayUpdate()
+    {
+        return scan(displayUpdate);
+    }
+
+    @Benchmark
+    public boolean dispatchUnsubscribed()
+    {
+        return dispatcher.isSubscribed(registry.type) && dispatcher.dispatch(registry);
+    }
+
+    @Benchmark
+    public boolean scanUnsubscribed()
+    {
+        return scan(registry);
+    }
+
+    /**
+     * Delivers the event by checking each plugin's subscription, as before the dispatcher.
+     */
+    private boolean scan(final ClientEvent event)
+    {
+        for (final IClientPlugin plugin : plugins.values())
+        {
+            final EnumSet<ClientEvent.Type> types = subscriptions.get(plugin.getModId());
+            if (types != null && types.contains(event.type))
+            {
+                plugin.onEvent(event);
+            }
+        }
+        return event.isCancelled();
+    }
+
+    /**
+     * Counts the events it receives, so the calls can't be eliminated.
+     */
+    static final class CountingPlugin implements IClientPlugin
+    {
+        final String modId;
+        long received;
+
+        CountingPlugin(final String modId)
+        {
+            this.modId = modId;
+        }
+
+        @Override
+        public void initialize(final IClientAPI jmClientApi)
+        {
+        }
+
+        @Override
+        public String getModId()
+        {
+            return modId;
+        }
+
+        @Override
+        public void onEvent(final ClientEvent event)
+        {
+            received++;
+        }
+    }
+}
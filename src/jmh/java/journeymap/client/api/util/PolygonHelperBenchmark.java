@@ -0,0 +1,245 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link PolygonHelper}.  Run with {@code ./gradlew jmh}.
+ * <p>
+ * Each shape is generated from a fixed seed, so results are comparable between runs:
+ * <ul>
+ * <li>blob: one contiguous, ragged claim grown outwards from the origin</li>
+ * <li>checkerboard: every other chunk, so nothing is connected</li>
+ * <li>rings: concentric square rings, each a hull with the next ring nested in its hole</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolygonHelperBenchmark
+{
+    private static final int Y = 64;
+
+    @Param({"blob", "checkerboard", "rings"})
+    public String shape;
+
+    @Param({"100", "10000", "100000"})
+    public int chunkCount;
+
+    private List<ChunkPos> chunks;
+    private Area area;
+    private List<MapPolygon> polygons;
+    private MapPolygon largestHull;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        final Random random = new Random(42);
+        switch (shape)
+        {
+            case "blob":
+                chunks = blob(chunkCount, random);
+                break;
+            case "checkerboard":
+                chunks = checkerboard(chunkCount);
+                break;
+            case "rings":
+                chunks = rings(chunkCount);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+
+        area = PolygonHelper.createChunksArea(chunks);
+        polygons = new ArrayList<>();
+        largestHull = null;
+        for (final MapPolygonWithHoles polygon : PolygonHelper.createChunksPolygon(chunks, Y))
+        {
+            polygons.add(polygon.hull);
+            if (polygon.holes != null)
+            {
+                polygons.addAll(polygon.holes);
+            }
+            if (largestHull == null || polygon.hull.size() > largestHull.size())
+            {
+                largestHull = polygon.hull;
+            }
+        }
+    }
+
+    @Benchmark
+    public Area createChunksArea()
+    {
+        return PolygonHelper.createChunksArea(chunks);
+    }
+
+    @Benchmark
+    public List<MapPolygonWithHoles> createChunksPolygon()
+    {
+        return PolygonHelper.createChunksPolygon(chunks, Y);
+    }
+
+    @Benchmark
+    public List<MapPolygonWithHoles> createPolygonFromArea()
+    {
+        return PolygonHelper.createPolygonFromArea(area, Y);
+    }
+
+    @Benchmark
+    public List<MapPolygonWithHoles> classifyAndGroup()
+    {
+        return PolygonHelper.classifyAndGroup(polygons);
+    }
+
+    @Benchmark
+    public Area toArea()
+    {
+        return PolygonHelper.toArea(largestHull);
+    }
+
+    @Benchmark
+    public MapPolygon createBlockRect(final Corners corners)
+    {
+        return PolygonHelper.createBlockRect(corners.first, corners.second);
+    }
+
+    /**
+     * Corners for {@link #createBlockRect(Corners)}, which doesn't depend on the chunk parameters.
+     */
+    @State(Scope.Benchmark)
+    public static class Corners
+    {
+        BlockPos first;
+        BlockPos second;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            first = new BlockPos(-1234, 64, 5678);
+            second = new BlockPos(987, 70, -321);
+        }
+    }
+
+    /**
+     * Grows a contiguous claim by repeatedly adding a random chunk next to the ones already added.
+     */
+    static List<ChunkPos> blob(final int count, final Random random)
+    {
+        final Set<Long> added = new LinkedHashSet<>();
+        final List<Long> frontier = new ArrayList<>();
+        frontier.add(ChunkPos.asLong(0, 0));
+        while (added.size() < count && !frontier.isEmpty())
+        {
+            // Swap-remove a random frontier chunk
+            final int index = random.nextInt(frontier.size());
+            final long key = frontier.get(index);
+            frontier.set(index, frontier.get(frontier.size() - 1));
+            frontier.remove(frontier.size() - 1);
+            if (!added.add(key))
+            {
+                continue;
+            }
+            final int x = ChunkPos.getX(key);
+            final int z = ChunkPos.getZ(key);
+            frontier.add(ChunkPos.asLong(x + 1, z));
+            frontier.add(ChunkPos.asLong(x - 1, z));
+            frontier.add(ChunkPos.asLong(x, z + 1));
+            frontier.add(ChunkPos.asLong(x, z - 1));
+        }
+
+        final List<ChunkPos> result = new ArrayList<>(added.size());
+        for (final long key : added)
+        {
+            result.add(new ChunkPos(key));
+        }
+        return result;
+    }
+
+    /**
+     * Every other chunk of a square, so that no two chunks share a side.
+     */
+    static List<ChunkPos> checkerboard(final int count)
+    {
+        final int side = (int) Math.ceil(Math.sqrt(count * 2.0));
+        final List<ChunkPos> result = new ArrayList<>(count);
+        for (int z = 0; z < side && result.size() < count; z++)
+        {
+            for (int x = (z & 1); x < side && result.size() < count; x += 2)
+            {
+                result.add(new ChunkPos(x, z));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Concentric square rings two chunks wide with a one-chunk gap between them, from the centre outwards.
+     */
+    static List<ChunkPos> rings(final int count)
+    {
+        final List<ChunkPos> result = new ArrayList<>(count);
+        for (int radius = 0; result.size() < count; radius++)
+        {
+            if (radius % 3 == 2)
+            {
+                continue;
+            }
+            for (int x = -radius; x <= radius && result.size() < count; x++)
+            {
+                for (int z = -radius; z <= radius && result.size() < count; z++)
+                {
+                    if (Math.max(Math.abs(x), Math.abs(z)) == radius)
+                    {
+                        result.add(new ChunkPos(x, z));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -24,19 +24,33 @@ import com.mojang.blaze3d.platform.NativeImage;
 import journeymap.client.api.display.Context;
 import journeymap.client.api.display.DisplayType;
 import journeymap.client.api.display.Displayable;
+import journeymap.client.api.display.DisplayableUpdate;
+import journeymap.client.api.display.Overlay;
 import journeymap.client.api.display.Waypoint;
 import journeymap.client.api.event.ClientEvent;
+import journeymap.client.api.event.EventCoalescing;
+import journeymap.client.api.event.EventDelivery;
+import journeymap.client.api.model.DimensionKey;
+import journeymap.client.api.util.EventTimings;
 import journeymap.client.api.util.UIState;
+import journeymap.client.api.util.WaypointStore;
+import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Definition for the JourneyMap Client API.
@@ -61,12 +75,62 @@ public interface IClientAPI
     /**
      * Subscribes to all of the eventTypes specified. Use EnumSet.noneOf(ClientEvent.Type)
      * if no event subscriptions are needed. (This is the default).
+     * <p>
+     * Replaces any previous subscription for the modId, from the next event fired.  Each event is then delivered
+     * on the thread that fires it, once to each plugin subscribed to its type, in the order the plugins were loaded.
+     * See {@link journeymap.client.api.util.ClientEventDispatcher}.
      *
      * @param modId      Mod id
      * @param eventTypes set of types
      */
     void subscribe(String modId, EnumSet<ClientEvent.Type> eventTypes);
 
+    /**
+     * Subscribes to all of the eventTypes specified, with limits on how often mouse-move and display update
+     * events are delivered.  Use this when a plugin can't usefully react to every one of them, such as a plugin
+     * which only updates a tooltip once per frame.
+     * <p>
+     * The default implementation ignores the coalescing and delivers every event.
+     *
+     * @param modId      Mod id
+     * @param eventTypes set of types
+     * @param coalescing the limits, or null for none
+     * @see EventCoalescing
+     */
+    default void subscribe(String modId, EnumSet<ClientEvent.Type> eventTypes, @Nullable EventCoalescing coalescing)
+    {
+        subscribe(modId, eventTypes);
+    }
+
+    /**
+     * Sets how events are delivered to the mod's plugin.  With asynchronous delivery, events which can't be
+     * cancelled are queued and delivered on a worker thread, so a slow plugin doesn't stall rendering.
+     * Events already queued when the delivery changes are still delivered, in order, before any fired afterwards.
+     * <p>
+     * The default implementation ignores this and delivers every event synchronously.
+     *
+     * @param modId    Mod id
+     * @param delivery the delivery, or null for synchronous
+     * @see EventDelivery
+     */
+    default void setEventDelivery(String modId, @Nullable EventDelivery delivery)
+    {
+    }
+
+    /**
+     * Gets the timings of plugins' event handlers, per mod id and event type, to find which one is slowing the game.
+     * A warning is logged when a handler goes over {@link EventTimings#getBudgetNanos()}, which can be changed.
+     * <p>
+     * The default implementation doesn't time handlers, and returns null.
+     *
+     * @return the timings, or null if not available
+     */
+    @Nullable
+    default EventTimings getEventTimings()
+    {
+        return null;
+    }
+
     /**
      * Add (or update) a displayable object to the player's maps. If you modify a Displayable after it
      * has been added, call this method again to ensure the maps reflect your changes.
@@ -91,6 +155,92 @@ public interface IClientAPI
      */
     void remove(Displayable displayable);
 
+    /**
+     * Add (or update) a batch of displayable objects to the player's maps. This has the same effect as calling
+     * {@link #show(Displayable)} for each element, but JourneyMap only validates, indexes and re-renders once
+     * for the whole batch, so it should be preferred when submitting many Displayables at the same time.
+     * <p>
+     * If one of the Displayables can't be shown, the rest of the batch is still processed and the first
+     * exception encountered is thrown once the batch is complete.
+     * <p>
+     * Has no effect on display types not accepted by the player.
+     *
+     * @param displayables The objects to display.
+     * @throws Exception if any of the Displayables can't be shown.
+     * @see #show(Displayable)
+     */
+    default void showAll(Collection<? extends Displayable> displayables) throws Exception
+    {
+        Exception first = null;
+        for (Displayable displayable : displayables)
+        {
+            try
+            {
+                show(displayable);
+            }
+            catch (Exception e)
+            {
+                if (first == null)
+                {
+                    first = e;
+                }
+                else
+                {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+        if (first != null)
+        {
+            throw first;
+        }
+    }
+
+    /**
+     * Remove a batch of displayables from the player's maps. This has the same effect as calling
+     * {@link #remove(Displayable)} for each element, but JourneyMap only re-renders once for the whole batch.
+     * Has no effect on display types not accepted by the player.
+     *
+     * @param displayables The objects to remove.
+     * @see #remove(Displayable)
+     */
+    default void removeAll(Collection<? extends Displayable> displayables)
+    {
+        for (Displayable displayable : displayables)
+        {
+            remove(displayable);
+        }
+    }
+
+    /**
+     * Begins a session which buffers changes to many Displayables and publishes them together when
+     * {@link DisplayableUpdate#commit()} is called, so the maps are re-rendered once rather than once per change.
+     *
+     * @param modId Mod id
+     * @return a new, uncommitted session
+     * @see #applyUpdate(DisplayableUpdate)
+     */
+    default DisplayableUpdate beginUpdate(String modId)
+    {
+        return new DisplayableUpdate(this, modId);
+    }
+
+    /**
+     * Applies a committed session's changes, by calling {@link DisplayableUpdate#apply()}. Called by
+     * {@link DisplayableUpdate#commit()}; mods shouldn't call it directly.
+     * <p>
+     * The default implementation just applies the changes, so the renderer may see a Displayable part way through
+     * its mutations.  Implementations should override it to hold their render lock while the session is applied,
+     * which makes the commit atomic.
+     *
+     * @param update the session being committed
+     * @throws Exception if any of the Displayables can't be shown.
+     */
+    default void applyUpdate(DisplayableUpdate update) throws Exception
+    {
+        update.apply();
+    }
+
     /**
      * Remove all displayables by DisplayType from the player's maps.
      * Has no effect on display types not accepted by the player.
@@ -121,6 +271,45 @@ public interface IClientAPI
      */
     boolean exists(Displayable displayable);
 
+    /**
+     * Gets the overlays from your mod in the dimension whose bounds intersect the block bounds (XZ only),
+     * and which are visible somewhere in the zoom range specified. Overlays are found with a spatial index
+     * maintained by {@link #show(Displayable)} and {@link #remove(Displayable)}, so this is much cheaper than
+     * checking every overlay yourself.
+     * <p>
+     * The default implementation returns an empty list, since the interface has no way to enumerate overlays;
+     * implementations which index overlays should override it.
+     *
+     * @param modId       Mod id
+     * @param dimension   The dimension
+     * @param blockBounds The block bounds, such as {@link UIState#blockBounds}
+     * @param minZoom     The lowest zoom level (0-8)
+     * @param maxZoom     The highest zoom level (0-8)
+     * @return the overlays, in no particular order
+     * @see journeymap.client.api.util.OverlayIndex
+     */
+    default List<Overlay> getOverlays(String modId, ResourceKey<Level> dimension, AABB blockBounds, int minZoom, int maxZoom)
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the overlays from your mod which are within the current bounds and zoom level of a UI.
+     *
+     * @param modId   Mod id
+     * @param uiState The UIState, such as from a {@link journeymap.client.api.event.DisplayUpdateEvent}
+     * @return the overlays, in no particular order
+     * @see #getOverlays(String, ResourceKey, AABB, int, int)
+     */
+    default List<Overlay> getOverlays(String modId, UIState uiState)
+    {
+        if (uiState.blockBounds == null)
+        {
+            return Collections.emptyList();
+        }
+        return getOverlays(modId, uiState.dimension, uiState.blockBounds, uiState.zoom, uiState.zoom);
+    }
+
     /**
      * Check whether player will accept a type of Displayable from your mod. (Like Displayables or Overlays).
      *
@@ -218,6 +407,9 @@ public interface IClientAPI
     /**
      * Returns all waypoints that journeymap has stored for the current game/server.
      * Modifying these waypoints will not change anything in game, they are just a copy.
+     * The list is an unmodifiable snapshot which may be shared between calls while nothing changes,
+     * so polling is cheap.  The copies are shared with other callers, so make your own with
+     * {@link Waypoint#Waypoint(Waypoint)} before changing one.
      *
      * @return - List of all waypoints.
      */
@@ -226,6 +418,9 @@ public interface IClientAPI
     /**
      * Gets all waypoints for the provided dimension from all of journeymap's waypoints.
      * Modifying these waypoints will not change anything in game, they are just a copy.
+     * The list is an unmodifiable snapshot which may be shared between calls while nothing changes,
+     * so polling is cheap.  The copies are shared with other callers, so make your own with
+     * {@link Waypoint#Waypoint(Waypoint)} before changing one.
      *
      * @param dim - The dimension
      * @return The waypoints.
@@ -243,13 +438,86 @@ public interface IClientAPI
     Waypoint getWaypoint(final String modId, final String displayId);
 
     /**
-     * Gets all waypoints for the provided modId
+     * Gets all waypoints for the provided modId.
+     * Modifying these waypoints will not change anything in game, they are just a copy.
+     * The list is an unmodifiable snapshot which may be shared between calls while nothing changes,
+     * so polling is cheap.  The copies are shared with other callers, so make your own with
+     * {@link Waypoint#Waypoint(Waypoint)} before changing one.
      *
      * @param modId - The modId
      * @return the waypoint list
      */
     List<Waypoint> getWaypoints(final String modId);
 
+    /**
+     * Gets the waypoints displayed in a dimension nearest to a position in it, nearest first.  Waypoints from other
+     * dimensions are included if displayed there, at {@link Waypoint#getPosition(String)}, so Nether waypoints are
+     * scaled 8x in the Overworld and vice versa.
+     * <p>
+     * The default implementation checks every waypoint from {@link #getAllWaypoints()}; implementations should
+     * answer from a maintained {@link WaypointStore} instead.
+     *
+     * @param dimension the dimension
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param count     the maximum number of waypoints to return
+     * @return the nearest waypoints
+     */
+    default List<Waypoint> getNearestWaypoints(ResourceKey<Level> dimension, double x, double y, double z, int count)
+    {
+        if (count <= 0)
+        {
+            return new ArrayList<>(0);
+        }
+        final DimensionKey target = DimensionKey.of(dimension);
+        return getAllWaypoints().stream()
+                .filter(waypoint -> waypoint.isDisplayed(target))
+                .sorted(Comparator.comparingDouble(waypoint -> distanceSq(waypoint.getPosition(dimension), x, y, z)))
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the waypoints displayed in a dimension within a distance of a position in it, in no particular order.
+     * Waypoints from other dimensions are included if displayed there, at {@link Waypoint#getPosition(String)}.
+     * <p>
+     * The default implementation checks every waypoint from {@link #getAllWaypoints()}; implementations should
+     * answer from a maintained {@link WaypointStore} instead.
+     *
+     * @param dimension the dimension
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param radius    the distance in blocks
+     * @return the waypoints within the radius
+     */
+    default List<Waypoint> getWaypointsWithinRadius(ResourceKey<Level> dimension, double x, double y, double z, double radius)
+    {
+        final List<Waypoint> result = new ArrayList<>();
+        if (radius < 0)
+        {
+            return result;
+        }
+        final DimensionKey target = DimensionKey.of(dimension);
+        for (Waypoint waypoint : getAllWaypoints())
+        {
+            if (waypoint.isDisplayed(target) && distanceSq(waypoint.getPosition(dimension), x, y, z) <= radius * radius)
+            {
+                result.add(waypoint);
+            }
+        }
+        return result;
+    }
+
+    private static double distanceSq(BlockPos pos, double x, double y, double z)
+    {
+        final double dx = pos.getX() - x;
+        final double dy = pos.getY() - y;
+        final double dz = pos.getZ() - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
     /**
      * NOTE: Mod Devs, please only use when connected to specific servers or use the getter to verify. If multiple mods use this hook
      * it can lead to an infinite loop on the client. Because mapping is restarted and the MAPPING_STARTED is fired again after the worldId is set.
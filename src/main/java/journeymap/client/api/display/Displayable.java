@@ -20,7 +20,6 @@
 
 package journeymap.client.api.display;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 import com.google.gson.annotations.Since;
@@ -44,6 +43,10 @@ public abstract class Displayable implements Comparable<Displayable>
     @Since(1.1)
     protected final DisplayType displayType;
 
+    // Built once; deserialized instances build it on first use, since GSON sets the fields afterwards.
+    // String caches its own hash, so hashing the guid is free after the first time.
+    private transient String guid;
+
     /**
      * Needed for GSON deserialization.
      */
@@ -83,6 +86,21 @@ public abstract class Displayable implements Comparable<Displayable>
         this.modId = modId;
         this.id = displayId;
         this.displayType = DisplayType.of(getClass());
+        this.guid = createGuid(modId, displayType, displayId);
+    }
+
+    /**
+     * Builds the GUID a Displayable with these ids has, so it can be looked up without an instance.
+     *
+     * @param modId       the mod id
+     * @param displayType the display type
+     * @param displayId   the display id
+     * @return the guid
+     * @see #getGuid()
+     */
+    public static String createGuid(String modId, DisplayType displayType, String displayId)
+    {
+        return modId + "-" + displayType + "-" + displayId;
     }
 
     /**
@@ -147,16 +165,24 @@ public abstract class Displayable implements Comparable<Displayable>
 
     /**
      * Dash-delimited GUID for the display object in the form of "modid-displayType-displayId".
+     * This is built once, so it is cheap to use as a map key.
      *
      * @return the guid
      */
     public final String getGuid()
     {
-        return Joiner.on("-").join(modId, displayType, id);
+        String result = guid;
+        if (result == null)
+        {
+            result = createGuid(modId, displayType, id);
+            guid = result;
+        }
+        return result;
     }
 
     /**
-     * Equality is based on either reference equality or GUID.
+     * Equality is based on either reference equality or GUID.  Objects with different cached hashes
+     * are rejected without comparing strings.
      *
      * @param o other
      * @return true if equal
@@ -173,15 +199,21 @@ public abstract class Displayable implements Comparable<Displayable>
             return false;
         }
         Displayable that = (Displayable) o;
-        return Objects.equal(modId, that.modId) &&
-                Objects.equal(displayType, that.displayType) &&
+        return getGuid().hashCode() == that.getGuid().hashCode() &&
+                displayType == that.displayType &&
+                Objects.equal(modId, that.modId) &&
                 Objects.equal(id, that.id);
     }
 
+    /**
+     * The hash of the GUID, computed once.
+     *
+     * @return hash code
+     */
     @Override
     public int hashCode()
     {
-        return Objects.hashCode(modId, displayType, id);
+        return getGuid().hashCode();
     }
 
     /**
@@ -0,0 +1,222 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import com.google.common.base.MoreObjects;
+import journeymap.client.api.IClientAPI;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A session which buffers changes to many Displayables and publishes them to the player's maps in one go.
+ * Obtain one from {@link IClientAPI#beginUpdate(String)}.
+ * <p>
+ * Mutations passed to {@link #update(Displayable, Consumer)} are not applied until {@link #commit()} is called.
+ * On commit, mutations are applied in the order they were added, affected Overlays are flagged for a single
+ * re-render, and the results are submitted with {@link IClientAPI#showAll} and
+ * {@link IClientAPI#removeAll(java.util.Collection)}.
+ * <p>
+ * The mutations change the Displayables in place.  Whether the renderer can see one part way through being changed
+ * depends on {@link IClientAPI#applyUpdate(DisplayableUpdate)}: the default implementation makes no guarantee, and
+ * an implementation which applies the update under its render lock makes the commit atomic.
+ * <p>
+ * A session can only be committed once, and is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class DisplayableUpdate
+{
+    protected final IClientAPI clientAPI;
+    protected final String modId;
+    protected final List<Runnable> mutations = new ArrayList<>();
+    // Keyed by GUID, so a later instance with the same GUID replaces an earlier one
+    protected final Map<String, Displayable> toShow = new LinkedHashMap<>();
+    protected final Map<String, Displayable> toRemove = new LinkedHashMap<>();
+    private boolean committed;
+    private boolean applied;
+
+    /**
+     * Constructor.
+     *
+     * @param clientAPI the api the changes will be published to
+     * @param modId     the mod id
+     */
+    public DisplayableUpdate(IClientAPI clientAPI, String modId)
+    {
+        this.clientAPI = clientAPI;
+        this.modId = modId;
+    }
+
+    /**
+     * Your mod id.
+     *
+     * @return modId mod id
+     */
+    public final String getModId()
+    {
+        return modId;
+    }
+
+    /**
+     * Buffers a change to a Displayable. The mutation is applied on {@link #commit()}, after which
+     * the Displayable is shown.
+     *
+     * @param displayable the object to change
+     * @param mutation    the change to apply, e.g. {@code overlay -> overlay.setLabel("Claimed")}
+     * @param <T>         the Displayable type
+     * @return this
+     */
+    public <T extends Displayable> DisplayableUpdate update(T displayable, Consumer<? super T> mutation)
+    {
+        checkDisplayable(displayable);
+        mutations.add(() -> mutation.accept(displayable));
+        return show(displayable);
+    }
+
+    /**
+     * Adds (or updates) a Displayable on commit.  If another instance with the same GUID was passed earlier,
+     * this one is shown instead.
+     *
+     * @param displayable the object to display
+     * @return this
+     */
+    public DisplayableUpdate show(Displayable displayable)
+    {
+        checkDisplayable(displayable);
+        toRemove.remove(displayable.getGuid());
+        toShow.put(displayable.getGuid(), displayable);
+        return this;
+    }
+
+    /**
+     * Removes a Displayable on commit.
+     *
+     * @param displayable the object to remove
+     * @return this
+     */
+    public DisplayableUpdate remove(Displayable displayable)
+    {
+        checkDisplayable(displayable);
+        toShow.remove(displayable.getGuid());
+        toRemove.put(displayable.getGuid(), displayable);
+        return this;
+    }
+
+    /**
+     * Whether there is nothing to publish.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty()
+    {
+        return mutations.isEmpty() && toShow.isEmpty() && toRemove.isEmpty();
+    }
+
+    /**
+     * Whether the session has already been committed.
+     *
+     * @return true if committed
+     */
+    public final boolean isCommitted()
+    {
+        return committed;
+    }
+
+    /**
+     * Publishes the buffered changes by passing this session to {@link IClientAPI#applyUpdate(DisplayableUpdate)}.
+     *
+     * @throws Exception if any of the Displayables can't be shown.
+     * @see IClientAPI#showAll
+     */
+    public void commit() throws Exception
+    {
+        if (committed)
+        {
+            throw new IllegalStateException("DisplayableUpdate has already been committed");
+        }
+        committed = true;
+        clientAPI.applyUpdate(this);
+    }
+
+    /**
+     * Applies all buffered mutations and publishes the affected Displayables to the player's maps.
+     * This is for {@link IClientAPI#applyUpdate(DisplayableUpdate)}; call {@link #commit()} instead.
+     *
+     * @throws Exception if any of the Displayables can't be shown.
+     * @throws IllegalStateException if the session isn't being committed, or has already been applied.
+     */
+    public void apply() throws Exception
+    {
+        if (!committed || applied)
+        {
+            throw new IllegalStateException("DisplayableUpdate can only be applied once, from commit()");
+        }
+        applied = true;
+
+        for (Runnable mutation : mutations)
+        {
+            mutation.run();
+        }
+        for (Displayable displayable : toShow.values())
+        {
+            if (displayable instanceof Overlay)
+            {
+                ((Overlay) displayable).flagForRerender();
+            }
+        }
+        if (!toRemove.isEmpty())
+        {
+            clientAPI.removeAll(toRemove.values());
+        }
+        if (!toShow.isEmpty())
+        {
+            clientAPI.showAll(toShow.values());
+        }
+    }
+
+    private void checkDisplayable(Displayable displayable)
+    {
+        if (committed)
+        {
+            throw new IllegalStateException("DisplayableUpdate has already been committed");
+        }
+        if (!modId.equals(displayable.getModId()))
+        {
+            throw new IllegalArgumentException("Displayable belongs to " + displayable.getModId() + ", not " + modId);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("modId", modId)
+                .add("mutations", mutations.size())
+                .add("toShow", toShow.size())
+                .add("toRemove", toRemove.size())
+                .add("committed", committed)
+                .toString();
+    }
+}
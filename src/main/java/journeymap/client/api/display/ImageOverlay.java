@@ -22,6 +22,7 @@ package journeymap.client.api.display;
 
 import journeymap.client.api.model.MapImage;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -120,6 +121,12 @@ public final class ImageOverlay extends Overlay
         return this;
     }
 
+    @Override
+    public AABB getBounds()
+    {
+        return new AABB(northWestPoint, southEastPoint);
+    }
+
     @Override
     public String toString()
     {
@@ -22,6 +22,7 @@ package journeymap.client.api.display;
 
 import journeymap.client.api.model.MapImage;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -98,6 +99,12 @@ public final class MarkerOverlay extends Overlay
         return this;
     }
 
+    @Override
+    public AABB getBounds()
+    {
+        return new AABB(point, point);
+    }
+
     @Override
     public String toString()
     {
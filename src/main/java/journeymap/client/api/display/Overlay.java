@@ -25,6 +25,7 @@ import journeymap.client.api.model.TextProperties;
 import journeymap.client.api.util.UIState;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -36,6 +37,9 @@ import java.util.EnumSet;
 @ParametersAreNonnullByDefault
 public abstract class Overlay extends Displayable
 {
+    // The world border can't be set beyond 30 million blocks from the origin
+    private static final double WORLD_LIMIT = 30_000_000;
+
     protected String overlayGroupName;
     protected String title;
     protected String label;
@@ -305,6 +309,20 @@ public abstract class Overlay extends Displayable
                 && (this.minZoom <= uiState.zoom && this.maxZoom >= uiState.zoom));
     }
 
+    /**
+     * The XZ block bounds covered by the overlay, used to find overlays within a map viewport.
+     * Y is not significant.
+     * <p>
+     * The default implementation covers the whole world, so the overlay is found by every viewport query.
+     * Subclasses should override it with their actual bounds.
+     *
+     * @return the bounds
+     */
+    public AABB getBounds()
+    {
+        return new AABB(-WORLD_LIMIT, 0, -WORLD_LIMIT, WORLD_LIMIT, 0, WORLD_LIMIT);
+    }
+
     /**
      * Gets the listener for user events on the overlay.
      *
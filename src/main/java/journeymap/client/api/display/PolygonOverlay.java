@@ -22,9 +22,12 @@ package journeymap.client.api.display;
 
 import journeymap.client.api.model.MapPolygon;
 import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.model.PolygonMesh;
 import journeymap.client.api.model.ShapeProperties;
+import journeymap.client.api.util.PolygonHelper;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -46,6 +49,12 @@ public final class PolygonOverlay extends Overlay
     private MapPolygon outerArea;
     private List<MapPolygon> holes;
     private ShapeProperties shapeProperties;
+    private double simplifyTolerance = 1.0;
+    private MapPolygonWithHoles[] levelsOfDetail;
+    private PolygonMesh[] meshes;
+    // The outer area and holes, and their revisions, when the levels of detail were built
+    private MapPolygon[] builtPolygons;
+    private int[] builtRevisions;
 
     /**
      * Constructor.
@@ -107,6 +116,8 @@ public final class PolygonOverlay extends Overlay
     public PolygonOverlay setOuterArea(MapPolygon outerArea)
     {
         this.outerArea = outerArea;
+        this.levelsOfDetail = null;
+        this.meshes = null;
         return this;
     }
 
@@ -136,6 +147,8 @@ public final class PolygonOverlay extends Overlay
         {
             this.holes = new ArrayList<MapPolygon>(holes);
         }
+        this.levelsOfDetail = null;
+        this.meshes = null;
         return this;
     }
 
@@ -147,6 +160,140 @@ public final class PolygonOverlay extends Overlay
         return setOuterArea(polygon.hull).setHoles(polygon.holes);
     }
 
+    /**
+     * Gets the outer area and holes simplified for display at a zoom level (0-8), with any detail smaller
+     * than the simplify tolerance removed.  Holes which would be smaller than the tolerance are left out.
+     * <p>
+     * Levels are built on first use and cached until the outer area or holes are replaced or have their points
+     * set, or {@link #flagForRerender()} is called.
+     *
+     * @param zoom the zoom level
+     * @return the simplified polygon, which may share MapPolygon instances with this overlay
+     * @see PolygonHelper#simplify(MapPolygon, double)
+     */
+    public MapPolygonWithHoles getSimplified(int zoom)
+    {
+        zoom = Math.max(0, Math.min(8, zoom));
+        checkRevision();
+        if (levelsOfDetail == null)
+        {
+            levelsOfDetail = new MapPolygonWithHoles[9];
+        }
+        if (levelsOfDetail[zoom] == null)
+        {
+            // A pixel covers one block at the highest zoom level, doubling with each level below it
+            final double tolerance = simplifyTolerance * (1 << (8 - zoom));
+            List<MapPolygon> simplifiedHoles = null;
+            if (holes != null)
+            {
+                simplifiedHoles = new ArrayList<MapPolygon>(holes.size());
+                for (MapPolygon hole : holes)
+                {
+                    AABB bounds = hole.getBounds();
+                    if (bounds.maxX - bounds.minX > tolerance || bounds.maxZ - bounds.minZ > tolerance)
+                    {
+                        simplifiedHoles.add(PolygonHelper.simplify(hole, tolerance));
+                    }
+                }
+            }
+            levelsOfDetail[zoom] = new MapPolygonWithHoles(PolygonHelper.simplify(outerArea, tolerance), simplifiedHoles);
+        }
+        return levelsOfDetail[zoom];
+    }
+
+    /**
+     * Gets the triangles needed to fill the polygon at a zoom level (0-8), from {@link #getSimplified(int)}.
+     * <p>
+     * Like the levels of detail, meshes are built on first use and cached until the outer area or holes are
+     * replaced or have their points set, or {@link #flagForRerender()} is called, so a fill doesn't need
+     * re-tessellating every frame.
+     *
+     * @param zoom the zoom level
+     * @return the triangles
+     * @see PolygonHelper#triangulate(MapPolygonWithHoles)
+     */
+    public PolygonMesh getMesh(int zoom)
+    {
+        zoom = Math.max(0, Math.min(8, zoom));
+        checkRevision();
+        if (meshes == null)
+        {
+            meshes = new PolygonMesh[9];
+        }
+        if (meshes[zoom] == null)
+        {
+            meshes[zoom] = PolygonHelper.triangulate(getSimplified(zoom));
+        }
+        return meshes[zoom];
+    }
+
+    /**
+     * Discards levels of detail and meshes if the outer area or holes are no longer the same instances, in the same
+     * order, with the same revisions as when they were built.  This catches changes made through the live list from
+     * {@link #getHoles()} as well as to the points.
+     */
+    private void checkRevision()
+    {
+        final int count = 1 + (holes == null ? 0 : holes.size());
+        boolean current = builtPolygons != null && builtPolygons.length == count;
+        for (int i = 0; current && i < count; i++)
+        {
+            final MapPolygon polygon = (i == 0) ? outerArea : holes.get(i - 1);
+            current = builtPolygons[i] == polygon && builtRevisions[i] == polygon.getRevision();
+        }
+        if (!current)
+        {
+            builtPolygons = new MapPolygon[count];
+            builtRevisions = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                final MapPolygon polygon = (i == 0) ? outerArea : holes.get(i - 1);
+                builtPolygons[i] = polygon;
+                builtRevisions[i] = polygon.getRevision();
+            }
+            levelsOfDetail = null;
+            meshes = null;
+        }
+    }
+
+    /**
+     * The largest error, in pixels, allowed when simplifying the polygon for display. Default is 1.
+     * A pixel is taken to cover one block at zoom level 8 and twice as many blocks at each level below, so at the
+     * default a chunk-aligned outline keeps all its corners from zoom 6 up and loses chunk-sized steps below that.
+     *
+     * @return the tolerance
+     */
+    public double getSimplifyTolerance()
+    {
+        return simplifyTolerance;
+    }
+
+    /**
+     * Sets the largest error, in pixels, allowed when simplifying the polygon for display.
+     * Use 0 to disable simplification.
+     *
+     * @param simplifyTolerance the tolerance
+     * @return this
+     */
+    public PolygonOverlay setSimplifyTolerance(double simplifyTolerance)
+    {
+        this.simplifyTolerance = Math.max(0, simplifyTolerance);
+        this.levelsOfDetail = null;
+        this.meshes = null;
+        return this;
+    }
+
+    /**
+     * Also discards simplified levels of detail and meshes.
+     */
+    @Override
+    public void flagForRerender()
+    {
+        super.flagForRerender();
+        this.levelsOfDetail = null;
+        this.meshes = null;
+    }
+
     /**
      * Gets the shape properties used to display the polygons.
      *
@@ -169,6 +316,17 @@ public final class PolygonOverlay extends Overlay
         return this;
     }
 
+    /**
+     * The bounds of the outer area. Holes are always inside the outer area, so they don't contribute.
+     *
+     * @return the bounds
+     */
+    @Override
+    public AABB getBounds()
+    {
+        return outerArea.getBounds();
+    }
+
     @Override
     public String toString()
     {
@@ -24,6 +24,7 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import com.google.gson.annotations.Since;
+import journeymap.client.api.model.DimensionKey;
 import journeymap.client.api.model.WaypointBase;
 import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceKey;
@@ -31,7 +32,6 @@ import net.minecraft.world.level.Level;
 import org.joml.Vector3d;
 
 import javax.annotation.Nullable;
-import java.util.Arrays;
 
 /**
  * Definition for a waypoint that is offered to a player.
@@ -46,6 +46,8 @@ public class Waypoint extends WaypointBase<Waypoint>
 {
     public static final double VERSION = 1.5;
 
+    private static final DimPosition[] NO_POSITIONS = new DimPosition[0];
+
     protected final transient CachedDimPosition cachedDimPosition = new CachedDimPosition();
     @Since(1.4)
     protected final double version = VERSION;
@@ -118,6 +120,22 @@ public class Waypoint extends WaypointBase<Waypoint>
         setPosition(dimension, position);
     }
 
+    /**
+     * Copy constructor.  The group is copied too, so changing the copy or its group doesn't change the original.
+     *
+     * @param other the waypoint to copy
+     */
+    public Waypoint(Waypoint other)
+    {
+        super(other.getModId(), other.getId(), other.name);
+        copyFrom(other);
+        setPosition(other.dim, other.pos);
+        this.group = other.group == null ? null : new WaypointGroup(other.group);
+        this.persistent = other.persistent;
+        this.editable = other.editable;
+        this.enabled = other.enabled;
+        setDirty(other.dirty);
+    }
 
     /**
      * (Optional) Group or category name for the waypoint.
@@ -144,6 +162,16 @@ public class Waypoint extends WaypointBase<Waypoint>
         return dim;
     }
 
+    /**
+     * Interned key for {@link #getDimension()}.
+     *
+     * @return the key
+     */
+    public final DimensionKey getDimensionKey()
+    {
+        return DimensionKey.of(dim);
+    }
+
     /**
      * Waypoint location.
      */
@@ -162,24 +190,35 @@ public class Waypoint extends WaypointBase<Waypoint>
         return cachedDimPosition.getPosition(targetDimension);
     }
 
+    /**
+     * Gets block position within the specified dimension
+     *
+     * @return the block pos
+     */
+    public net.minecraft.core.BlockPos getPosition(ResourceKey<Level> targetDimension)
+    {
+        return cachedDimPosition.getPosition(targetDimension);
+    }
+
     /**
      * Gets block position within the specified dimension (not cached)
      *
      * @return the block pos
      */
-    private BlockPos getInternalPosition(String targetDimension)
+    private static BlockPos getInternalPosition(String dim, BlockPos pos, DimensionKey targetDimension)
     {
-        if (!this.dim.equalsIgnoreCase(targetDimension))
+        final DimensionKey dimension = DimensionKey.of(dim);
+        if (dimension != targetDimension)
         {
-            if (this.dim.equalsIgnoreCase(Level.NETHER.location().toString()))
+            if (dimension == DimensionKey.NETHER)
             {
                 // Convert coords to 8x horizontal scale outside of the Nether
-                pos = new net.minecraft.core.BlockPos(pos.getX() * 8, pos.getY(), pos.getZ() * 8);
+                return new net.minecraft.core.BlockPos(pos.getX() * 8, pos.getY(), pos.getZ() * 8);
             }
-            else if (targetDimension.equalsIgnoreCase(Level.NETHER.location().toString()))
+            else if (targetDimension == DimensionKey.NETHER)
             {
                 // Convert coords to 1/8 horizontal scale for display in the Nether
-                pos = new net.minecraft.core.BlockPos(pos.getX() / 8.0, pos.getY(), pos.getZ() / 8.0);
+                return new net.minecraft.core.BlockPos(pos.getX() / 8.0, pos.getY(), pos.getZ() / 8.0);
             }
         }
         return pos;
@@ -217,9 +256,12 @@ public class Waypoint extends WaypointBase<Waypoint>
         {
             throw new IllegalArgumentException("position may not be null");
         }
-        this.dim = dimension;
-        this.pos = position;
-        this.cachedDimPosition.reset();
+        synchronized (cachedDimPosition)
+        {
+            this.dim = dimension;
+            this.pos = position;
+            this.cachedDimPosition.reset();
+        }
         return setDirty();
     }
 
@@ -234,6 +276,17 @@ public class Waypoint extends WaypointBase<Waypoint>
         return this.cachedDimPosition.getVec(dimension);
     }
 
+    /**
+     * Gets Vec3D position relative to dimension.
+     * Caches the result.
+     *
+     * @return the position
+     */
+    public Vector3d getVec(ResourceKey<Level> dimension)
+    {
+        return this.cachedDimPosition.getVec(dimension);
+    }
+
     /**
      * Gets block-centered position as a Vec3D
      *
@@ -244,6 +297,16 @@ public class Waypoint extends WaypointBase<Waypoint>
         return this.cachedDimPosition.getCenteredVec(dimension);
     }
 
+    /**
+     * Gets block-centered position as a Vec3D
+     *
+     * @return the position
+     */
+    public Vector3d getCenteredVec(ResourceKey<Level> dimension)
+    {
+        return this.cachedDimPosition.getCenteredVec(dimension);
+    }
+
     /**
      * Whether or not the waypoint should be persisted (saved to file)
      * after the player disconnects from the world or changes displayDims.
@@ -329,8 +392,9 @@ public class Waypoint extends WaypointBase<Waypoint>
         if (dims == null)
         {
             setDisplayDimensions(dim);
+            return displayDims;
         }
-        return displayDims;
+        return dims;
     }
 
     @Override
@@ -339,37 +403,29 @@ public class Waypoint extends WaypointBase<Waypoint>
         return (group != null) ? group.getDisplayOrder() : 0;
     }
 
+    /**
+     * Value equality: also compares the dimension, position, and whether the waypoint is persistent and editable.
+     *
+     * @param other the other waypoint
+     * @return true if the same waypoint with the same content
+     */
     @Override
-    public boolean equals(Object o)
+    public boolean contentEquals(@Nullable WaypointBase<?> other)
     {
-        if (this == o)
+        if (this == other)
         {
             return true;
         }
-        if (!(o instanceof Waypoint))
-        {
-            return false;
-        }
-        if (!super.equals(o))
+        if (!(other instanceof Waypoint))
         {
             return false;
         }
-        Waypoint that = (Waypoint) o;
-        return isPersistent() == that.isPersistent() &&
-                isEditable() == that.isEditable() &&
-                Objects.equal(getDimension(), that.getDimension()) &&
-                Objects.equal(getColor(), that.getColor()) &&
-                Objects.equal(getBackgroundColor(), that.getBackgroundColor()) &&
-                Objects.equal(getName(), that.getName()) &&
-                Objects.equal(getPosition(), that.getPosition()) &&
-                Objects.equal(getIcon(), that.getIcon()) &&
-                Arrays.equals(getDisplayDimensions(), that.getDisplayDimensions());
-    }
-
-    @Override
-    public int hashCode()
-    {
-        return Objects.hashCode(super.hashCode(), getName());
+        Waypoint that = (Waypoint) other;
+        return persistent == that.persistent &&
+                editable == that.editable &&
+                Objects.equal(dim, that.dim) &&
+                Objects.equal(pos, that.pos) &&
+                super.contentEquals(that);
     }
 
     @Override
@@ -393,13 +449,17 @@ public class Waypoint extends WaypointBase<Waypoint>
     /**
      * Caches frequently-used positions/vectors within a dimension,
      * rather than calculating them on every use.
+     * <p>
+     * Each dimension's values are computed once and published as an immutable entry, so the cache can be read
+     * from any thread without locking.  Dimensions are matched by reference first, so interned keys such as
+     * {@link ResourceKey}s are found without comparing strings.  Misses and {@link #setPosition} lock this object.
+     * The returned vectors are shared, and must not be modified.
      */
     class CachedDimPosition
     {
-        String cachedDim;
-        BlockPos cachedPos;
-        Vector3d cachedVec;
-        Vector3d cachedCenteredVec;
+        private static final int MAX_ENTRIES = 4;
+
+        private volatile DimPosition[] entries = NO_POSITIONS;
 
         CachedDimPosition()
         {
@@ -410,27 +470,59 @@ public class Waypoint extends WaypointBase<Waypoint>
          */
         CachedDimPosition reset()
         {
-            cachedDim = null;
-            cachedPos = null;
-            cachedVec = null;
-            cachedCenteredVec = null;
+            entries = NO_POSITIONS;
             return this;
         }
 
         /**
          * Ensure cached values are relative to the requested dimension.
          */
-        private CachedDimPosition ensure(String dimension)
+        private DimPosition ensure(Object dimension)
         {
-            if (this.cachedDim != dimension)
+            DimPosition entry = find(entries, dimension);
+            if (entry == null)
             {
-                this.cachedDim = dimension;
-                this.cachedPos = Waypoint.this.getInternalPosition(dimension);
-                this.cachedVec = new Vector3d(this.cachedPos.getX(), this.cachedPos.getY(), this.cachedPos.getZ());
-                this.cachedCenteredVec = new Vector3d(.5, .5, .5);
-                this.cachedCenteredVec.add(this.cachedVec);
+                synchronized (this)
+                {
+                    final DimPosition[] current = entries;
+                    entry = find(current, dimension);
+                    if (entry == null)
+                    {
+                        @SuppressWarnings("unchecked")
+                        final DimensionKey target = dimension instanceof ResourceKey
+                                ? DimensionKey.of((ResourceKey<Level>) dimension)
+                                : DimensionKey.of((String) dimension);
+                        entry = new DimPosition(dimension, getInternalPosition(dim, pos, target));
+
+                        // Keep the most recent dimensions, dropping the oldest
+                        final int keep = Math.min(current.length, MAX_ENTRIES - 1);
+                        final DimPosition[] updated = new DimPosition[keep + 1];
+                        System.arraycopy(current, current.length - keep, updated, 0, keep);
+                        updated[keep] = entry;
+                        entries = updated;
+                    }
+                }
             }
-            return this;
+            return entry;
+        }
+
+        private DimPosition find(DimPosition[] entries, Object dimension)
+        {
+            for (final DimPosition entry : entries)
+            {
+                if (entry.dimension == dimension)
+                {
+                    return entry;
+                }
+            }
+            for (final DimPosition entry : entries)
+            {
+                if (entry.dimension.equals(dimension))
+                {
+                    return entry;
+                }
+            }
+            return null;
         }
 
         /**
@@ -441,7 +533,18 @@ public class Waypoint extends WaypointBase<Waypoint>
          */
         public BlockPos getPosition(String dimension)
         {
-            return ensure(dimension).cachedPos;
+            return ensure(dimension).pos;
+        }
+
+        /**
+         * Gets position relative to dimension.
+         *
+         * @param dimension targetDimension
+         * @return position
+         */
+        public BlockPos getPosition(ResourceKey<Level> dimension)
+        {
+            return ensure(dimension).pos;
         }
 
         /**
@@ -452,7 +555,18 @@ public class Waypoint extends WaypointBase<Waypoint>
          */
         public Vector3d getVec(String dimension)
         {
-            return ensure(dimension).cachedVec;
+            return ensure(dimension).vec;
+        }
+
+        /**
+         * Gets Vec3D position relative to dimension.
+         *
+         * @param dimension targetDimension
+         * @return position
+         */
+        public Vector3d getVec(ResourceKey<Level> dimension)
+        {
+            return ensure(dimension).vec;
         }
 
         /**
@@ -462,7 +576,36 @@ public class Waypoint extends WaypointBase<Waypoint>
          */
         public Vector3d getCenteredVec(String dimension)
         {
-            return ensure(dimension).cachedCenteredVec;
+            return ensure(dimension).centeredVec;
+        }
+
+        /**
+         * Gets block-centered position as a Vec3D
+         *
+         * @return the position
+         */
+        public Vector3d getCenteredVec(ResourceKey<Level> dimension)
+        {
+            return ensure(dimension).centeredVec;
+        }
+    }
+
+    /**
+     * Positions within one dimension.
+     */
+    private static final class DimPosition
+    {
+        final Object dimension;
+        final BlockPos pos;
+        final Vector3d vec;
+        final Vector3d centeredVec;
+
+        DimPosition(Object dimension, BlockPos pos)
+        {
+            this.dimension = dimension;
+            this.pos = pos;
+            this.vec = new Vector3d(pos.getX(), pos.getY(), pos.getZ());
+            this.centeredVec = new Vector3d(pos.getX() + .5, pos.getY() + .5, pos.getZ() + .5);
         }
     }
 }
@@ -1,9 +1,9 @@
 package journeymap.client.api.display;
 
-import com.google.common.base.Objects;
 import com.google.gson.annotations.Since;
 import journeymap.client.api.model.WaypointBase;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.UUID;
 
@@ -43,6 +43,19 @@ public class WaypointGroup extends WaypointBase<WaypointGroup>
         super(modId, id, name);
     }
 
+    /**
+     * Copy constructor.  The defaultDisplay, which is only set at runtime, is shared.
+     *
+     * @param other the group to copy
+     */
+    public WaypointGroup(WaypointGroup other)
+    {
+        super(other.getModId(), other.getId(), other.name);
+        copyFrom(other);
+        this.order = other.order;
+        this.defaultDisplay = other.defaultDisplay;
+    }
+
     /**
      * JourneyMap use only:  Sets a defaultDisplay to delegate color and icons, but only during runtime. (Not persisted)
      *
@@ -56,6 +69,7 @@ public class WaypointGroup extends WaypointBase<WaypointGroup>
             throw new IllegalArgumentException("WaypointGroup may not use itself as a defaultDisplay");
         }
         this.defaultDisplay = defaultDisplay;
+        advanceRevision();
         return this;
     }
 
@@ -83,29 +97,27 @@ public class WaypointGroup extends WaypointBase<WaypointGroup>
         return this;
     }
 
+    /**
+     * Value equality: also compares the display order.
+     *
+     * @param other the other group
+     * @return true if the same group with the same content
+     */
     @Override
-    public boolean equals(Object o)
+    public boolean contentEquals(@Nullable WaypointBase<?> other)
     {
-        if (this == o)
+        if (this == other)
         {
             return true;
         }
-        if (!(o instanceof WaypointGroup))
-        {
-            return false;
-        }
-        if (!super.equals(o))
+        if (!(other instanceof WaypointGroup))
         {
             return false;
         }
-        WaypointGroup that = (WaypointGroup) o;
-        return order == that.order && Double.compare(that.version, version) == 0;
-    }
-
-    @Override
-    public int hashCode()
-    {
-        return Objects.hashCode(super.hashCode(), version);
+        WaypointGroup that = (WaypointGroup) other;
+        return order == that.order &&
+                Double.compare(that.version, version) == 0 &&
+                super.contentEquals(that);
     }
 }
 
@@ -23,11 +23,17 @@ package journeymap.client.api.event;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Parent class for events propagated by the Client API to IClientPlugin implementations.
  */
 public class ClientEvent
 {
+    // Timestamps are derived from nanoTime, anchored to the wall clock once
+    private static final long EPOCH_MILLIS = System.currentTimeMillis();
+    private static final long EPOCH_NANOS = System.nanoTime();
+
     /**
      * Event type.
      */
@@ -39,10 +45,21 @@ public class ClientEvent
     public final ResourceKey<Level> dimension;
 
     /**
-     * System millis when event was created.
+     * System millis when the event object was created.  JourneyMap reuses some events (see
+     * {@link FullscreenMapEvent#isReusable()}), so use {@link #getTimestamp()} for when the event was fired.
      */
     public final long timestamp;
 
+    /**
+     * System millis when event was created, or last reused.
+     */
+    private long firedMillis;
+
+    /**
+     * System.nanoTime() when event was created, or last reused.
+     */
+    private long nanoTime;
+
     /**
      * Whether event has been cancelled.
      */
@@ -55,7 +72,8 @@ public class ClientEvent
     {
         this.type = type;
         this.dimension = dimension;
-        this.timestamp = System.currentTimeMillis();
+        stamp();
+        this.timestamp = firedMillis;
     }
 
     /**
@@ -66,6 +84,60 @@ public class ClientEvent
         this(type, Level.OVERWORLD);
     }
 
+    /**
+     * Gets the system millis when the event was fired.  This is the same as {@link #timestamp} unless the event
+     * has been reused.
+     *
+     * @return millis
+     */
+    public long getTimestamp()
+    {
+        return firedMillis;
+    }
+
+    /**
+     * Gets the monotonic {@link System#nanoTime()} when the event was fired.  Use this rather than
+     * {@link #getTimestamp()} to measure intervals between events.
+     *
+     * @return nanos
+     */
+    public long getNanoTime()
+    {
+        return nanoTime;
+    }
+
+    /**
+     * Gets an instance of this event which stays valid after {@link journeymap.client.api.IClientPlugin#onEvent}
+     * returns.  Events which JourneyMap reuses, such as mouse moves (see {@link FullscreenMapEvent#isReusable()}),
+     * return a copy; others return themselves.
+     *
+     * @return this, or a copy
+     */
+    public ClientEvent snapshot()
+    {
+        return this;
+    }
+
+    /**
+     * Sets the timestamps to now and clears cancellation, for a new or reused event.
+     */
+    void stamp()
+    {
+        this.nanoTime = System.nanoTime();
+        this.firedMillis = EPOCH_MILLIS + TimeUnit.NANOSECONDS.toMillis(nanoTime - EPOCH_NANOS);
+        this.cancelled = false;
+    }
+
+    /**
+     * Copies the timestamps and cancellation from another event, for a snapshot.
+     */
+    void copyState(ClientEvent other)
+    {
+        this.nanoTime = other.nanoTime;
+        this.firedMillis = other.firedMillis;
+        this.cancelled = other.cancelled;
+    }
+
     /**
      * Whether the event has been cancelled.
      *
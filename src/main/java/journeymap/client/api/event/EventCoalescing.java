@@ -0,0 +1,158 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.event;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Opt-in limits on how often a plugin receives high-frequency events, passed to
+ * {@link journeymap.client.api.IClientAPI#subscribe(String, java.util.EnumSet, EventCoalescing)}.
+ * <p>
+ * Only {@link ClientEvent.Type#MAP_MOUSE_MOVED} and {@link ClientEvent.Type#DISPLAY_UPDATE} are coalesced; other
+ * event types are always delivered as they occur.  A coalesced event which is held back is replaced by the next
+ * one of the same kind (latest wins), so the plugin always ends up with the most recent state.  Display updates
+ * are coalesced separately for each {@link journeymap.client.api.display.Context.UI}.
+ * <p>
+ * Setters use the Builder pattern so they can be chained.
+ */
+public class EventCoalescing
+{
+    private boolean perFrame;
+    private long minIntervalMillis;
+    private double minBlockDistance;
+
+    /**
+     * Coalescing which delivers the latest event of each kind at most once per frame.
+     *
+     * @return a new instance
+     */
+    public static EventCoalescing perFrame()
+    {
+        return new EventCoalescing().setPerFrame(true);
+    }
+
+    /**
+     * Coalescing which delivers the latest event of each kind at most once per interval.
+     *
+     * @param minIntervalMillis the interval in millis
+     * @return a new instance
+     */
+    public static EventCoalescing minInterval(long minIntervalMillis)
+    {
+        return new EventCoalescing().setMinIntervalMillis(minIntervalMillis);
+    }
+
+    /**
+     * Whether events are held until the end of the frame, and only the latest delivered.
+     *
+     * @return true if per frame
+     */
+    public boolean isPerFrame()
+    {
+        return perFrame;
+    }
+
+    /**
+     * Sets whether events are held until the end of the frame, and only the latest delivered.
+     *
+     * @param perFrame true if per frame
+     * @return this
+     */
+    public EventCoalescing setPerFrame(boolean perFrame)
+    {
+        this.perFrame = perFrame;
+        return this;
+    }
+
+    /**
+     * Gets the minimum time between deliveries.
+     *
+     * @return millis, 0 if none
+     */
+    public long getMinIntervalMillis()
+    {
+        return minIntervalMillis;
+    }
+
+    /**
+     * Sets the minimum time between deliveries.  An event arriving sooner is held, and delivered at the end of
+     * a frame once the interval has passed, unless a newer one replaces it first.
+     *
+     * @param minIntervalMillis millis, 0 for none
+     * @return this
+     */
+    public EventCoalescing setMinIntervalMillis(long minIntervalMillis)
+    {
+        if (minIntervalMillis < 0)
+        {
+            throw new IllegalArgumentException("minIntervalMillis can't be negative: " + minIntervalMillis);
+        }
+        this.minIntervalMillis = minIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Gets the minimum distance in blocks the mouse must move before another mouse-move event is delivered.
+     *
+     * @return blocks, 0 if none
+     */
+    public double getMinBlockDistance()
+    {
+        return minBlockDistance;
+    }
+
+    /**
+     * Sets the minimum distance in blocks the mouse must move from the last mouse-move event accepted before
+     * another is delivered.  Closer ones are dropped rather than held.  Doesn't apply to display updates.
+     *
+     * @param minBlockDistance blocks, 0 for none
+     * @return this
+     */
+    public EventCoalescing setMinBlockDistance(double minBlockDistance)
+    {
+        if (!(minBlockDistance >= 0))
+        {
+            throw new IllegalArgumentException("minBlockDistance can't be negative: " + minBlockDistance);
+        }
+        this.minBlockDistance = minBlockDistance;
+        return this;
+    }
+
+    /**
+     * Whether any limit is set.
+     *
+     * @return true if events will be coalesced
+     */
+    public boolean isEnabled()
+    {
+        return perFrame || minIntervalMillis > 0 || minBlockDistance > 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("perFrame", perFrame)
+                .add("minIntervalMillis", minIntervalMillis)
+                .add("minBlockDistance", minBlockDistance)
+                .toString();
+    }
+}
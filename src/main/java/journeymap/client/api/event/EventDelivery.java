@@ -0,0 +1,197 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.event;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * How events are delivered to a plugin, passed to
+ * {@link journeymap.client.api.IClientAPI#setEventDelivery(String, EventDelivery)}.
+ * <p>
+ * By default, events are delivered synchronously on the thread which fires them, usually the main render thread.
+ * A plugin which does slow work in {@link journeymap.client.api.IClientPlugin#onEvent(ClientEvent)} can opt into
+ * asynchronous delivery instead: events of types which can't be cancelled ({@link ClientEvent.Type#cancellable}
+ * is false) are put on a bounded queue for the plugin, and delivered in order, one at a time, on a worker thread.
+ * Cancellable types such as {@link ClientEvent.Type#MAP_CLICKED} and {@link ClientEvent.Type#DEATH_WAYPOINT} are
+ * always delivered synchronously, so that cancelling them still has an effect.
+ * <p>
+ * A plugin using asynchronous delivery must not call back into the game from onEvent() without going through
+ * the main thread, and must not keep events to compare by identity.
+ * <p>
+ * Setters use the Builder pattern so they can be chained.
+ */
+public class EventDelivery
+{
+    /**
+     * Default queue capacity.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private boolean async;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private Overflow overflow = Overflow.DROP_OLDEST;
+    private long blockTimeoutMillis = 5;
+
+    /**
+     * Asynchronous delivery with the default queue capacity, dropping the oldest event when the queue is full.
+     *
+     * @return a new instance
+     */
+    public static EventDelivery async()
+    {
+        return new EventDelivery().setAsync(true);
+    }
+
+    /**
+     * Whether non-cancellable events are delivered asynchronously.
+     *
+     * @return true if async
+     */
+    public boolean isAsync()
+    {
+        return async;
+    }
+
+    /**
+     * Sets whether non-cancellable events are delivered asynchronously.
+     *
+     * @param async true if async
+     * @return this
+     */
+    public EventDelivery setAsync(boolean async)
+    {
+        this.async = async;
+        return this;
+    }
+
+    /**
+     * Gets the most events which can be waiting for the plugin.
+     *
+     * @return the capacity
+     */
+    public int getQueueCapacity()
+    {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the most events which can be waiting for the plugin.
+     *
+     * @param queueCapacity the capacity, at least 1
+     * @return this
+     */
+    public EventDelivery setQueueCapacity(int queueCapacity)
+    {
+        if (queueCapacity < 1)
+        {
+            throw new IllegalArgumentException("queueCapacity must be at least 1: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Gets what happens to an event fired while the queue is full.
+     *
+     * @return the overflow policy
+     */
+    public Overflow getOverflow()
+    {
+        return overflow;
+    }
+
+    /**
+     * Sets what happens to an event fired while the queue is full.
+     *
+     * @param overflow the overflow policy
+     * @return this
+     */
+    public EventDelivery setOverflow(Overflow overflow)
+    {
+        if (overflow == null)
+        {
+            throw new IllegalArgumentException("overflow can't be null");
+        }
+        this.overflow = overflow;
+        return this;
+    }
+
+    /**
+     * Gets how long the firing thread waits for room in the queue with {@link Overflow#BLOCK}.
+     *
+     * @return millis
+     */
+    public long getBlockTimeoutMillis()
+    {
+        return blockTimeoutMillis;
+    }
+
+    /**
+     * Sets how long the firing thread waits for room in the queue with {@link Overflow#BLOCK}, before dropping
+     * the event.  Keep this short, since the firing thread is usually the render thread.
+     *
+     * @param blockTimeoutMillis millis
+     * @return this
+     */
+    public EventDelivery setBlockTimeoutMillis(long blockTimeoutMillis)
+    {
+        if (blockTimeoutMillis < 0)
+        {
+            throw new IllegalArgumentException("blockTimeoutMillis can't be negative: " + blockTimeoutMillis);
+        }
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("async", async)
+                .add("queueCapacity", queueCapacity)
+                .add("overflow", overflow)
+                .add("blockTimeoutMillis", blockTimeoutMillis)
+                .toString();
+    }
+
+    /**
+     * What happens to an event fired while the plugin's queue is full.  Every event dropped is counted by
+     * {@link journeymap.client.api.util.ClientEventDispatcher#getDroppedCount(String)}.
+     */
+    public enum Overflow
+    {
+        /**
+         * Drop the oldest waiting event to make room.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Drop the event being fired.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Make the firing thread wait for room, up to {@link #getBlockTimeoutMillis()}, then drop the event being
+         * fired.
+         */
+        BLOCK
+    }
+}
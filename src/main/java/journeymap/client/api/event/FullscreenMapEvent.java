@@ -12,10 +12,20 @@ import static journeymap.client.api.event.ClientEvent.Type.MAP_DRAGGED;
 
 /**
  * Event classes for the Fullscreen map.
+ * <p>
+ * To avoid creating garbage while the mouse moves or drags, JourneyMap may reuse one instance of each of these
+ * events, obtained from a {@link FullscreenMapEventPool}.  A reused event is only valid during
+ * {@link journeymap.client.api.IClientPlugin#onEvent(ClientEvent)}: after that it will be overwritten by the next
+ * event of the same kind.  Check {@link #isReusable()}, and call {@link #snapshot()} to keep one.
+ * The primitive getters, such as {@link #getBlockX()} and {@link ClickEvent#getMouseX()}, never allocate.
  */
 public class FullscreenMapEvent extends ClientEvent
 {
-    private final BlockPos location;
+    private BlockPos location;
+    private int blockX;
+    private int blockY;
+    private int blockZ;
+    private boolean reusable;
 
     /**
      * Map clicked event, fired when a user clicks on the map.
@@ -28,28 +38,102 @@ public class FullscreenMapEvent extends ClientEvent
     private FullscreenMapEvent(Type type, BlockPos location, ResourceKey<Level> level)
     {
         super(type, level);
-        this.location = location;
+        setLocation(location);
+    }
+
+    /**
+     * Reusable event, set before each use.
+     *
+     * @param type  - The event type.
+     * @param level - The dimension.
+     */
+    private FullscreenMapEvent(Type type, ResourceKey<Level> level)
+    {
+        super(type, level);
+        this.reusable = true;
     }
 
     public BlockPos getLocation()
     {
+        if (location == null)
+        {
+            location = new BlockPos(blockX, blockY, blockZ);
+        }
         return location;
     }
 
+    public int getBlockX()
+    {
+        return blockX;
+    }
+
+    public int getBlockY()
+    {
+        return blockY;
+    }
+
+    public int getBlockZ()
+    {
+        return blockZ;
+    }
+
     public ResourceKey<Level> getLevel()
     {
         return dimension;
     }
 
+    /**
+     * Whether JourneyMap reuses this instance for the next event of the same kind, in which case it is only valid
+     * during {@link journeymap.client.api.IClientPlugin#onEvent(ClientEvent)}.
+     *
+     * @return true if reused
+     */
+    public boolean isReusable()
+    {
+        return reusable;
+    }
+
+    @Override
+    public ClientEvent snapshot()
+    {
+        return reusable ? copy() : this;
+    }
+
+    /**
+     * Creates a copy which isn't reused.
+     */
+    FullscreenMapEvent copy()
+    {
+        return this;
+    }
+
+    void setLocation(BlockPos location)
+    {
+        this.location = location;
+        this.blockX = location.getX();
+        this.blockY = location.getY();
+        this.blockZ = location.getZ();
+    }
+
+    void setLocation(int blockX, int blockY, int blockZ)
+    {
+        this.location = null;
+        this.blockX = blockX;
+        this.blockY = blockY;
+        this.blockZ = blockZ;
+    }
+
 
     /**
      * ClickedEvent, handles mouseclicks pre and post, pre is cancelable post is not.
      */
     public static class ClickEvent extends FullscreenMapEvent
     {
-        private final int button;
-        private final Point2D.Double mousePosition;
         private final Stage stage;
+        private int button;
+        private double mouseX;
+        private double mouseY;
+        private Point2D.Double mousePosition;
 
         /**
          * Map clicked event, fired when a user clicks on the map.
@@ -66,9 +150,23 @@ public class FullscreenMapEvent extends ClientEvent
             super(MAP_CLICKED, location, level);
             this.stage = stage;
             this.mousePosition = mousePosition;
+            this.mouseX = mousePosition.x;
+            this.mouseY = mousePosition.y;
             this.button = button;
         }
 
+        /**
+         * Reusable event, set before each use.
+         *
+         * @param stage - The stage
+         * @param level - The dimension.
+         */
+        ClickEvent(Stage stage, ResourceKey<Level> level)
+        {
+            super(MAP_CLICKED, level);
+            this.stage = stage;
+        }
+
         public Stage getStage()
         {
             return stage;
@@ -76,16 +174,20 @@ public class FullscreenMapEvent extends ClientEvent
 
         public double getMouseX()
         {
-            return mousePosition.x;
+            return mouseX;
         }
 
         public double getMouseY()
         {
-            return mousePosition.y;
+            return mouseY;
         }
 
         public Point2D.Double getMousePosition()
         {
+            if (mousePosition == null)
+            {
+                mousePosition = new Point2D.Double(mouseX, mouseY);
+            }
             return mousePosition;
         }
 
@@ -94,6 +196,28 @@ public class FullscreenMapEvent extends ClientEvent
             return button;
         }
 
+        ClickEvent set(int blockX, int blockY, int blockZ, double mouseX, double mouseY, int button)
+        {
+            stamp();
+            setLocation(blockX, blockY, blockZ);
+            this.mouseX = mouseX;
+            this.mouseY = mouseY;
+            this.mousePosition = null;
+            this.button = button;
+            return this;
+        }
+
+        @Override
+        FullscreenMapEvent copy()
+        {
+            final Point2D.Double position = new Point2D.Double(mouseX, mouseY);
+            final ClickEvent copy = (stage == Stage.PRE)
+                    ? new Pre(getLocation(), dimension, position, button)
+                    : new Post(getLocation(), dimension, position, button);
+            copy.copyState(this);
+            return copy;
+        }
+
         /**
          * Fired before the click, can be cancelled
          */
@@ -104,6 +228,11 @@ public class FullscreenMapEvent extends ClientEvent
             {
                 super(Stage.PRE, location, level, mousePosition, button);
             }
+
+            Pre(ResourceKey<Level> level)
+            {
+                super(Stage.PRE, level);
+            }
         }
 
         /**
@@ -117,6 +246,11 @@ public class FullscreenMapEvent extends ClientEvent
                 super(Stage.POST, location, level, mousePosition, button);
             }
 
+            Post(ResourceKey<Level> level)
+            {
+                super(Stage.POST, level);
+            }
+
             @Override
             public boolean isCancellable()
             {
@@ -130,9 +264,11 @@ public class FullscreenMapEvent extends ClientEvent
      */
     public static class MouseDraggedEvent extends FullscreenMapEvent
     {
-        private final int button;
-        private final Point2D.Double mousePosition;
         private final Stage stage;
+        private int button;
+        private double mouseX;
+        private double mouseY;
+        private Point2D.Double mousePosition;
 
         /**
          * Map MouseDraggedEvent event, fired when a user drag the mouse on the map.
@@ -149,9 +285,23 @@ public class FullscreenMapEvent extends ClientEvent
             super(MAP_DRAGGED, location, level);
             this.stage = stage;
             this.mousePosition = mousePosition;
+            this.mouseX = mousePosition.x;
+            this.mouseY = mousePosition.y;
             this.button = button;
         }
 
+        /**
+         * Reusable event, set before each use.
+         *
+         * @param stage - The stage
+         * @param level - The dimension.
+         */
+        MouseDraggedEvent(Stage stage, ResourceKey<Level> level)
+        {
+            super(MAP_DRAGGED, level);
+            this.stage = stage;
+        }
+
         public Stage getStage()
         {
             return stage;
@@ -159,16 +309,20 @@ public class FullscreenMapEvent extends ClientEvent
 
         public double getMouseX()
         {
-            return mousePosition.x;
+            return mouseX;
         }
 
         public double getMouseY()
         {
-            return mousePosition.y;
+            return mouseY;
         }
 
         public Point2D.Double getMousePosition()
         {
+            if (mousePosition == null)
+            {
+                mousePosition = new Point2D.Double(mouseX, mouseY);
+            }
             return mousePosition;
         }
 
@@ -177,6 +331,28 @@ public class FullscreenMapEvent extends ClientEvent
             return button;
         }
 
+        MouseDraggedEvent set(int blockX, int blockY, int blockZ, double mouseX, double mouseY, int button)
+        {
+            stamp();
+            setLocation(blockX, blockY, blockZ);
+            this.mouseX = mouseX;
+            this.mouseY = mouseY;
+            this.mousePosition = null;
+            this.button = button;
+            return this;
+        }
+
+        @Override
+        FullscreenMapEvent copy()
+        {
+            final Point2D.Double position = new Point2D.Double(mouseX, mouseY);
+            final MouseDraggedEvent copy = (stage == Stage.PRE)
+                    ? new Pre(getLocation(), dimension, position, button)
+                    : new Post(getLocation(), dimension, position, button);
+            copy.copyState(this);
+            return copy;
+        }
+
         /**
          * Fired at the start of the drag, can be cancelled
          */
@@ -187,6 +363,11 @@ public class FullscreenMapEvent extends ClientEvent
             {
                 super(Stage.PRE, location, level, mousePosition, button);
             }
+
+            Pre(ResourceKey<Level> level)
+            {
+                super(Stage.PRE, level);
+            }
         }
 
         /**
@@ -200,6 +381,11 @@ public class FullscreenMapEvent extends ClientEvent
                 super(Stage.POST, location, level, mousePosition, button);
             }
 
+            Post(ResourceKey<Level> level)
+            {
+                super(Stage.POST, level);
+            }
+
             @Override
             public boolean isCancellable()
             {
@@ -213,8 +399,12 @@ public class FullscreenMapEvent extends ClientEvent
      */
     public static class MouseMoveEvent extends FullscreenMapEvent
     {
-        private final Point2D.Double mousePosition;
-        private final IBlockInfo info;
+        private IBlockInfo info;
+        private BlockInfoResolver resolver;
+        private boolean resolved;
+        private double mouseX;
+        private double mouseY;
+        private Point2D.Double mousePosition;
 
         /**
          * Map clicked event, fired when a user clicks on the map.
@@ -227,28 +417,123 @@ public class FullscreenMapEvent extends ClientEvent
         {
             super(Type.MAP_MOUSE_MOVED, info.getBlockPos(), level);
             this.mousePosition = mousePosition;
+            this.mouseX = mousePosition.x;
+            this.mouseY = mousePosition.y;
             this.info = info;
         }
 
+        /**
+         * Copy of an event whose block info couldn't be looked up.
+         *
+         * @param level    - The dimension.
+         * @param location - The BlockPos under the mouse.
+         */
+        private MouseMoveEvent(ResourceKey<Level> level, BlockPos location, Point2D.Double mousePosition)
+        {
+            super(Type.MAP_MOUSE_MOVED, location, level);
+            this.mousePosition = mousePosition;
+            this.mouseX = mousePosition.x;
+            this.mouseY = mousePosition.y;
+        }
+
+        /**
+         * Reusable event, set with block coordinates before each use.
+         *
+         * @param level    - The dimension.
+         * @param resolver - Looks up the block under the mouse the first time {@link #getInfo()} is called.
+         */
+        MouseMoveEvent(ResourceKey<Level> level, BlockInfoResolver resolver)
+        {
+            super(Type.MAP_MOUSE_MOVED, level);
+            this.resolver = resolver;
+        }
+
         public Point2D.Double getMousePosition()
         {
+            if (mousePosition == null)
+            {
+                mousePosition = new Point2D.Double(mouseX, mouseY);
+            }
             return mousePosition;
         }
 
         public double getMouseX()
         {
-            return mousePosition.x;
+            return mouseX;
         }
 
         public double getMouseY()
         {
-            return mousePosition.y;
+            return mouseY;
         }
 
+        /**
+         * Gets the block under the mouse.  When the event was set from block coordinates, it is only looked up
+         * the first time this is called.
+         *
+         * @return the block info, or null if it can't be looked up
+         */
         public IBlockInfo getInfo()
         {
+            if (!resolved && resolver != null)
+            {
+                info = resolver.resolve(dimension, getBlockX(), getBlockY(), getBlockZ());
+                resolved = true;
+            }
             return info;
         }
+
+        MouseMoveEvent set(IBlockInfo info, double mouseX, double mouseY)
+        {
+            stamp();
+            setLocation(info.getBlockPos());
+            this.info = info;
+            this.resolved = true;
+            this.mouseX = mouseX;
+            this.mouseY = mouseY;
+            this.mousePosition = null;
+            return this;
+        }
+
+        MouseMoveEvent set(int blockX, int blockY, int blockZ, double mouseX, double mouseY)
+        {
+            stamp();
+            setLocation(blockX, blockY, blockZ);
+            this.info = null;
+            this.resolved = false;
+            this.mouseX = mouseX;
+            this.mouseY = mouseY;
+            this.mousePosition = null;
+            return this;
+        }
+
+        @Override
+        FullscreenMapEvent copy()
+        {
+            final IBlockInfo info = getInfo();
+            final Point2D.Double position = new Point2D.Double(mouseX, mouseY);
+            final MouseMoveEvent copy = (info != null)
+                    ? new MouseMoveEvent(dimension, info, position)
+                    : new MouseMoveEvent(dimension, getLocation(), position);
+            copy.copyState(this);
+            return copy;
+        }
+
+        /**
+         * Looks up the block under the mouse for a {@link MouseMoveEvent} set from block coordinates.
+         */
+        @FunctionalInterface
+        public interface BlockInfoResolver
+        {
+            /**
+             * @param level  the dimension
+             * @param blockX block x
+             * @param blockY block y
+             * @param blockZ block z
+             * @return the block info, or null if it isn't available
+             */
+            IBlockInfo resolve(ResourceKey<Level> level, int blockX, int blockY, int blockZ);
+        }
     }
 
     public enum Stage
@@ -0,0 +1,187 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.event;
+
+import journeymap.client.api.model.IBlockInfo;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+/**
+ * Reusable {@link FullscreenMapEvent}s, used by JourneyMap to fire mouse events on the fullscreen map without
+ * creating garbage.
+ * <p>
+ * Each method sets up and returns the same instance every time, only creating a new one when the dimension
+ * changes.  The returned event is only valid until the same method is called again, so it must be fired
+ * before then, and plugins must only use it during {@link journeymap.client.api.IClientPlugin#onEvent(ClientEvent)}
+ * unless they take a {@link ClientEvent#snapshot()}.
+ * <p>
+ * This class is not thread-safe; use one per thread firing events.
+ */
+public final class FullscreenMapEventPool
+{
+    private FullscreenMapEvent.ClickEvent.Pre clickPre;
+    private FullscreenMapEvent.ClickEvent.Post clickPost;
+    private FullscreenMapEvent.MouseDraggedEvent.Pre dragPre;
+    private FullscreenMapEvent.MouseDraggedEvent.Post dragPost;
+    private FullscreenMapEvent.MouseMoveEvent mouseMove;
+    private FullscreenMapEvent.MouseMoveEvent.BlockInfoResolver blockInfoResolver;
+
+    /**
+     * Sets how {@link #mouseMove(ResourceKey, int, int, int, double, double)} looks up the block under the mouse,
+     * which it only does if a plugin calls {@link FullscreenMapEvent.MouseMoveEvent#getInfo()}.
+     *
+     * @param resolver the lookup
+     */
+    public void setBlockInfoResolver(FullscreenMapEvent.MouseMoveEvent.BlockInfoResolver resolver)
+    {
+        this.blockInfoResolver = resolver;
+        this.mouseMove = null;
+    }
+
+    /**
+     * Gets the event fired before a click.
+     *
+     * @param level  the dimension
+     * @param blockX block x of the click
+     * @param blockY block y of the click
+     * @param blockZ block z of the click
+     * @param mouseX scaled mouse x
+     * @param mouseY scaled mouse y
+     * @param button the mouse button
+     * @return the reused event
+     */
+    public FullscreenMapEvent.ClickEvent.Pre clickPre(ResourceKey<Level> level, int blockX, int blockY, int blockZ, double mouseX, double mouseY, int button)
+    {
+        if (clickPre == null || clickPre.dimension != level)
+        {
+            clickPre = new FullscreenMapEvent.ClickEvent.Pre(level);
+        }
+        clickPre.set(blockX, blockY, blockZ, mouseX, mouseY, button);
+        return clickPre;
+    }
+
+    /**
+     * Gets the event fired after a click.
+     *
+     * @param level  the dimension
+     * @param blockX block x of the click
+     * @param blockY block y of the click
+     * @param blockZ block z of the click
+     * @param mouseX scaled mouse x
+     * @param mouseY scaled mouse y
+     * @param button the mouse button
+     * @return the reused event
+     */
+    public FullscreenMapEvent.ClickEvent.Post clickPost(ResourceKey<Level> level, int blockX, int blockY, int blockZ, double mouseX, double mouseY, int button)
+    {
+        if (clickPost == null || clickPost.dimension != level)
+        {
+            clickPost = new FullscreenMapEvent.ClickEvent.Post(level);
+        }
+        clickPost.set(blockX, blockY, blockZ, mouseX, mouseY, button);
+        return clickPost;
+    }
+
+    /**
+     * Gets the event fired at the start of a drag.
+     *
+     * @param level  the dimension
+     * @param blockX block x of the mouse
+     * @param blockY block y of the mouse
+     * @param blockZ block z of the mouse
+     * @param mouseX scaled mouse x
+     * @param mouseY scaled mouse y
+     * @param button the mouse button
+     * @return the reused event
+     */
+    public FullscreenMapEvent.MouseDraggedEvent.Pre dragPre(ResourceKey<Level> level, int blockX, int blockY, int blockZ, double mouseX, double mouseY, int button)
+    {
+        if (dragPre == null || dragPre.dimension != level)
+        {
+            dragPre = new FullscreenMapEvent.MouseDraggedEvent.Pre(level);
+        }
+        dragPre.set(blockX, blockY, blockZ, mouseX, mouseY, button);
+        return dragPre;
+    }
+
+    /**
+     * Gets the event fired at the end of a drag.
+     *
+     * @param level  the dimension
+     * @param blockX block x of the mouse
+     * @param blockY block y of the mouse
+     * @param blockZ block z of the mouse
+     * @param mouseX scaled mouse x
+     * @param mouseY scaled mouse y
+     * @param button the mouse button
+     * @return the reused event
+     */
+    public FullscreenMapEvent.MouseDraggedEvent.Post dragPost(ResourceKey<Level> level, int blockX, int blockY, int blockZ, double mouseX, double mouseY, int button)
+    {
+        if (dragPost == null || dragPost.dimension != level)
+        {
+            dragPost = new FullscreenMapEvent.MouseDraggedEvent.Post(level);
+        }
+        dragPost.set(blockX, blockY, blockZ, mouseX, mouseY, button);
+        return dragPost;
+    }
+
+    /**
+     * Gets the event fired when the mouse moves over the map.
+     *
+     * @param level  the dimension
+     * @param info   the block under the mouse
+     * @param mouseX scaled mouse x
+     * @param mouseY scaled mouse y
+     * @return the reused event
+     */
+    public FullscreenMapEvent.MouseMoveEvent mouseMove(ResourceKey<Level> level, IBlockInfo info, double mouseX, double mouseY)
+    {
+        if (mouseMove == null || mouseMove.dimension != level)
+        {
+            mouseMove = new FullscreenMapEvent.MouseMoveEvent(level, blockInfoResolver);
+        }
+        mouseMove.set(info, mouseX, mouseY);
+        return mouseMove;
+    }
+
+    /**
+     * Gets the event fired when the mouse moves over the map, without looking up the block under the mouse
+     * unless a plugin asks for it.
+     *
+     * @param level  the dimension
+     * @param blockX block x of the mouse
+     * @param blockY block y of the mouse
+     * @param blockZ block z of the mouse
+     * @param mouseX scaled mouse x
+     * @param mouseY scaled mouse y
+     * @return the reused event
+     */
+    public FullscreenMapEvent.MouseMoveEvent mouseMove(ResourceKey<Level> level, int blockX, int blockY, int blockZ, double mouseX, double mouseY)
+    {
+        if (mouseMove == null || mouseMove.dimension != level)
+        {
+            mouseMove = new FullscreenMapEvent.MouseMoveEvent(level, blockInfoResolver);
+        }
+        mouseMove.set(blockX, blockY, blockZ, mouseX, mouseY);
+        return mouseMove;
+    }
+}
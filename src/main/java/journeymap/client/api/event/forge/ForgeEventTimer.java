@@ -0,0 +1,63 @@
+package journeymap.client.api.event.forge;
+
+import journeymap.client.api.util.EventTimings;
+import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.IEventBus;
+import net.minecraftforge.eventbus.api.IEventBusInvokeDispatcher;
+import net.minecraftforge.eventbus.api.IEventListener;
+
+/**
+ * Posts JourneyMap's Forge bus events, such as {@link EntityRadarUpdateEvent} and {@link PopupMenuEvent}, timing
+ * each listener that handles them in {@link EventTimings}.
+ * <p>
+ * The bus doesn't say which mod registered a listener, so timings are recorded with the listener's description as
+ * the owner (for annotated handlers, the handler object and method), and the event's simple class name.
+ */
+public class ForgeEventTimer implements IEventBusInvokeDispatcher
+{
+    private final EventTimings timings;
+
+    /**
+     * Constructor.
+     *
+     * @param timings where to record timings
+     */
+    public ForgeEventTimer(EventTimings timings)
+    {
+        this.timings = timings;
+    }
+
+    /**
+     * Posts an event to the bus, timing each listener.
+     *
+     * @param bus   the bus
+     * @param event the event
+     * @return true if the event was cancelled
+     */
+    public boolean post(IEventBus bus, Event event)
+    {
+        return bus.post(event, this);
+    }
+
+    @Override
+    public void invoke(IEventListener listener, Event event)
+    {
+        // Priority markers just advance the event's phase
+        if (!timings.isEnabled() || listener instanceof EventPriority)
+        {
+            listener.invoke(event);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try
+        {
+            listener.invoke(event);
+        }
+        finally
+        {
+            timings.record(listener.toString(), event.getClass().getSimpleName(), System.nanoTime() - start);
+        }
+    }
+}
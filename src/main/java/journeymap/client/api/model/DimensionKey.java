@@ -0,0 +1,176 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.model;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An interned dimension name with a small ordinal.  There is one instance per dimension, ignoring case, so keys
+ * can be compared with {@code ==} and sets of dimensions can be held as bits, as in
+ * {@link WaypointBase#isDisplayed(DimensionKey)}.
+ * <p>
+ * Ordinals are assigned in order of first use and are only meaningful within the running game; persist
+ * {@link #getName()} instead.
+ */
+public final class DimensionKey
+{
+    private static final ConcurrentMap<String, DimensionKey> BY_NAME = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, DimensionKey> BY_LOWER_CASE_NAME = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<ResourceKey<Level>, DimensionKey> BY_RESOURCE_KEY = new ConcurrentHashMap<>();
+    private static final long[] NO_BITS = new long[0];
+    private static int nextOrdinal;
+
+    public static final DimensionKey OVERWORLD = of(Level.OVERWORLD);
+    public static final DimensionKey NETHER = of(Level.NETHER);
+    public static final DimensionKey END = of(Level.END);
+
+    private final String name;
+    private final int ordinal;
+
+    private DimensionKey(String name, int ordinal)
+    {
+        this.name = name;
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Gets the key for a dimension name, such as "minecraft:overworld".
+     *
+     * @param name the dimension name
+     * @return the key
+     */
+    public static DimensionKey of(String name)
+    {
+        final DimensionKey key = BY_NAME.get(name);
+        return key != null ? key : intern(name);
+    }
+
+    /**
+     * Gets the key for a dimension.
+     *
+     * @param dimension the dimension
+     * @return the key
+     */
+    public static DimensionKey of(ResourceKey<Level> dimension)
+    {
+        final DimensionKey key = BY_RESOURCE_KEY.get(dimension);
+        return key != null ? key : BY_RESOURCE_KEY.computeIfAbsent(dimension, dim -> of(dim.location().toString()));
+    }
+
+    private static DimensionKey intern(String name)
+    {
+        final DimensionKey key = BY_LOWER_CASE_NAME.computeIfAbsent(name.toLowerCase(Locale.ROOT), lowerCase ->
+        {
+            synchronized (BY_LOWER_CASE_NAME)
+            {
+                return new DimensionKey(name, nextOrdinal++);
+            }
+        });
+        BY_NAME.putIfAbsent(name, key);
+        return key;
+    }
+
+    /**
+     * The dimension name, as first seen.
+     *
+     * @return the name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Small, dense id for this dimension, for use as an index or bit number.
+     *
+     * @return the ordinal
+     */
+    public int ordinal()
+    {
+        return ordinal;
+    }
+
+    /**
+     * Whether the dimension matches a name, ignoring case.
+     *
+     * @param name the dimension name
+     * @return true if the same dimension
+     */
+    public boolean is(@Nullable String name)
+    {
+        return name != null && of(name) == this;
+    }
+
+    /**
+     * Whether this dimension's bit is set.
+     *
+     * @param bits bits from {@link #toBits(String[])}
+     * @return true if set
+     */
+    public boolean isIn(long[] bits)
+    {
+        final int word = ordinal >>> 6;
+        return word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Converts dimension names to a bitset of their ordinals.
+     *
+     * @param names the dimension names, may be null
+     * @return the bits
+     */
+    public static long[] toBits(@Nullable String[] names)
+    {
+        if (names == null || names.length == 0)
+        {
+            return NO_BITS;
+        }
+        long[] bits = NO_BITS;
+        for (final String name : names)
+        {
+            if (name == null)
+            {
+                continue;
+            }
+            final int ordinal = of(name).ordinal;
+            final int word = ordinal >>> 6;
+            if (word >= bits.length)
+            {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            bits[word] |= 1L << ordinal;
+        }
+        return bits;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
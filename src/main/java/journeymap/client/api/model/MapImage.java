@@ -158,6 +158,28 @@ public final class MapImage
         setOpacity(opacity);
     }
 
+    /**
+     * Copy constructor.  The image texture, if any, is shared.
+     *
+     * @param other the image to copy
+     */
+    public MapImage(MapImage other)
+    {
+        this.image = other.image;
+        this.imageLocation = other.imageLocation;
+        this.color = other.color;
+        this.opacity = other.opacity;
+        this.textureX = other.textureX;
+        this.textureY = other.textureY;
+        this.textureWidth = other.textureWidth;
+        this.textureHeight = other.textureHeight;
+        this.rotation = other.rotation;
+        this.displayWidth = other.displayWidth;
+        this.displayHeight = other.displayHeight;
+        this.anchorX = other.anchorX;
+        this.anchorY = other.anchorY;
+    }
+
     /**
      * Gets color.
      *
@@ -265,6 +287,24 @@ public final class MapImage
         return this;
     }
 
+    /**
+     * Anchor x, or null if it was never set.
+     */
+    @Nullable
+    Double getRawAnchorX()
+    {
+        return anchorX;
+    }
+
+    /**
+     * Anchor y, or null if it was never set.
+     */
+    @Nullable
+    Double getRawAnchorY()
+    {
+        return anchorY;
+    }
+
     /**
      * Centers the image on the associated position.
      * @return this
@@ -21,8 +21,19 @@
 package journeymap.client.api.model;
 
 import com.google.common.base.MoreObjects;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.AABB;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -34,14 +45,26 @@ import java.util.List;
  * counterclockwise.  The last point will be connected to the first when rendered.
  * <p>
  * Note that the actual list passed into the constructor isn't retained; the points
- * are copied into an unmodifiable list. If you need to update the points, pass in a new
- * list entirely.
+ * are copied into packed coordinate arrays. If you need to update the points, pass in a new
+ * list entirely.  Large polygons are cheaper to create with {@link #MapPolygon(int[], int[], int)}
+ * and to read with {@link #getX(int)}, {@link #getY(int)} and {@link #getZ(int)}, since the
+ * {@link #getPoints()} list is only built if it is asked for.
+ * <p>
+ * Gson reads and writes the same JSON as when the points were kept as a list, {@code {"points": [...]}}, so
+ * polygons saved by earlier versions still load.
  * <p>
  * Setters use the Builder pattern so they can be chained.
  */
+@JsonAdapter(MapPolygon.GsonAdapter.class)
 public final class MapPolygon
 {
-    private List<net.minecraft.core.BlockPos> points;
+    private int[] xs;
+    private int[] zs;
+    private int y;
+    private int[] ys;
+    private transient List<BlockPos> points;
+    private transient AABB bounds;
+    private transient int revision;
 
     /**
      * Constructor.
@@ -66,12 +89,34 @@ public final class MapPolygon
     }
 
     /**
-     * Gets an unmodifiable list of the points.
+     * Constructor using packed coordinates with a single y.  The arrays are copied.
+     *
+     * @param xs x coordinates. See class description for details on ordering.
+     * @param zs z coordinates, the same length as xs.
+     * @param y  y coordinate of every point.
+     * @throws IllegalArgumentException if conditions for a proper polygon aren't met.
+     */
+    public MapPolygon(int[] xs, int[] zs, int y)
+    {
+        setPoints(xs, zs, y);
+    }
+
+    /**
+     * Gets an unmodifiable list of the points.  The list is built on first use.
      *
      * @return points
      */
     public List<BlockPos> getPoints()
     {
+        if (points == null)
+        {
+            final BlockPos[] array = new BlockPos[xs.length];
+            for (int i = 0; i < array.length; i++)
+            {
+                array[i] = new BlockPos(xs[i], getY(i), zs[i]);
+            }
+            points = Collections.unmodifiableList(Arrays.asList(array));
+        }
         return points;
     }
 
@@ -82,10 +127,144 @@ public final class MapPolygon
             throw new IllegalArgumentException("MapPolygon must have at least 3 points.");
         }
 
-        this.points = Collections.unmodifiableList(points);
+        final int size = points.size();
+        final int[] xs = new int[size];
+        final int[] zs = new int[size];
+        int[] ys = null;
+        final int y = points.get(0).getY();
+        for (int i = 0; i < size; i++)
+        {
+            final BlockPos point = points.get(i);
+            xs[i] = point.getX();
+            zs[i] = point.getZ();
+            if (ys == null && point.getY() != y)
+            {
+                ys = new int[size];
+                Arrays.fill(ys, 0, i, y);
+            }
+            if (ys != null)
+            {
+                ys[i] = point.getY();
+            }
+        }
+        return setPacked(xs, zs, y, ys);
+    }
+
+    /**
+     * Sets the points using packed coordinates with a single y.  The arrays are copied.
+     *
+     * @param xs x coordinates
+     * @param zs z coordinates, the same length as xs.
+     * @param y  y coordinate of every point.
+     * @return this
+     */
+    public MapPolygon setPoints(int[] xs, int[] zs, int y)
+    {
+        if (xs.length != zs.length)
+        {
+            throw new IllegalArgumentException("MapPolygon xs and zs must be the same length.");
+        }
+        if (xs.length < 3)
+        {
+            throw new IllegalArgumentException("MapPolygon must have at least 3 points.");
+        }
+        return setPacked(xs.clone(), zs.clone(), y, null);
+    }
+
+    private MapPolygon setPacked(int[] xs, int[] zs, int y, int[] ys)
+    {
+        this.xs = xs;
+        this.zs = zs;
+        this.y = y;
+        this.ys = ys;
+        this.points = null;
+        this.bounds = null;
+        this.revision++;
         return this;
     }
 
+    /**
+     * A count of the times the points have been set, so anything derived from them can tell when to rebuild.
+     *
+     * @return the revision
+     */
+    public int getRevision()
+    {
+        return revision;
+    }
+
+    /**
+     * Number of points.
+     *
+     * @return size
+     */
+    public int size()
+    {
+        return xs.length;
+    }
+
+    /**
+     * X coordinate of a point.
+     *
+     * @param index point index
+     * @return x
+     */
+    public int getX(int index)
+    {
+        return xs[index];
+    }
+
+    /**
+     * Y coordinate of a point.
+     *
+     * @param index point index
+     * @return y
+     */
+    public int getY(int index)
+    {
+        return ys == null ? y : ys[index];
+    }
+
+    /**
+     * Z coordinate of a point.
+     *
+     * @param index point index
+     * @return z
+     */
+    public int getZ(int index)
+    {
+        return zs[index];
+    }
+
+    /**
+     * Gets the bounding box of the points.  This is computed once and cached until the points change.
+     *
+     * @return bounds
+     */
+    public AABB getBounds()
+    {
+        if (bounds == null)
+        {
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            int maxZ = Integer.MIN_VALUE;
+            for (int i = 0; i < xs.length; i++)
+            {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, getY(i));
+                minZ = Math.min(minZ, zs[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, getY(i));
+                maxZ = Math.max(maxZ, zs[i]);
+            }
+            bounds = new AABB(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        return bounds;
+    }
+
     /**
      * Iterates the points.
      *
@@ -93,14 +272,83 @@ public final class MapPolygon
      */
     public Iterator<net.minecraft.core.BlockPos> iterator()
     {
-        return points.iterator();
+        return getPoints().iterator();
     }
 
     @Override
     public String toString()
     {
         return MoreObjects.toStringHelper(this)
-                .add("points", points)
+                .add("points", getPoints())
                 .toString();
     }
+
+    /**
+     * Keeps the JSON form of a list of points, with each point written as Gson writes any other BlockPos.
+     */
+    static final class GsonAdapter implements TypeAdapterFactory
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)
+        {
+            if (type.getRawType() != MapPolygon.class)
+            {
+                return null;
+            }
+            final TypeAdapter<List<BlockPos>> pointsAdapter = gson.getAdapter(new TypeToken<List<BlockPos>>() {});
+            return (TypeAdapter<T>) new TypeAdapter<MapPolygon>()
+            {
+                @Override
+                public void write(JsonWriter out, MapPolygon polygon) throws IOException
+                {
+                    if (polygon == null)
+                    {
+                        out.nullValue();
+                        return;
+                    }
+                    out.beginObject();
+                    out.name("points");
+                    pointsAdapter.write(out, polygon.getPoints());
+                    out.endObject();
+                }
+
+                @Override
+                public MapPolygon read(JsonReader in) throws IOException
+                {
+                    if (in.peek() == JsonToken.NULL)
+                    {
+                        in.nextNull();
+                        return null;
+                    }
+                    List<BlockPos> points = null;
+                    in.beginObject();
+                    while (in.hasNext())
+                    {
+                        if ("points".equals(in.nextName()))
+                        {
+                            points = pointsAdapter.read(in);
+                        }
+                        else
+                        {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    if (points == null)
+                    {
+                        throw new JsonParseException("MapPolygon needs points");
+                    }
+                    try
+                    {
+                        return new MapPolygon(points);
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        throw new JsonParseException(e.getMessage(), e);
+                    }
+                }
+            };
+        }
+    }
 }
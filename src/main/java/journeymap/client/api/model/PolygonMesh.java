@@ -0,0 +1,108 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.model;
+
+import com.google.common.base.MoreObjects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A triangulated polygon, packed for rendering.  Vertices are stored as x, z float pairs relative to an integer
+ * origin, so that they stay exact for polygons far from 0,0.  Every three indices form a triangle.
+ * <p>
+ * The arrays are shared, not copied, and must not be modified.
+ */
+public final class PolygonMesh
+{
+    /**
+     * Empty mesh.
+     */
+    public static final PolygonMesh EMPTY = new PolygonMesh(0, 0, new float[0], new int[0]);
+
+    /**
+     * Block x which vertex x coordinates are relative to.
+     */
+    public final int originX;
+
+    /**
+     * Block z which vertex z coordinates are relative to.
+     */
+    public final int originZ;
+
+    /**
+     * Vertices as x, z pairs: the hull's points in order, followed by each hole's.
+     */
+    @Nonnull
+    public final float[] vertices;
+
+    /**
+     * Vertex indices, three per triangle.
+     */
+    @Nonnull
+    public final int[] indices;
+
+    /**
+     * Constructor.
+     *
+     * @param originX  block x which vertices are relative to
+     * @param originZ  block z which vertices are relative to
+     * @param vertices x, z pairs
+     * @param indices  three vertex indices per triangle
+     */
+    public PolygonMesh(final int originX, final int originZ, @Nonnull final float[] vertices, @Nonnull final int[] indices)
+    {
+        this.originX = originX;
+        this.originZ = originZ;
+        this.vertices = vertices;
+        this.indices = indices;
+    }
+
+    /**
+     * Number of vertices.
+     *
+     * @return the count
+     */
+    public int getVertexCount()
+    {
+        return vertices.length / 2;
+    }
+
+    /**
+     * Number of triangles.
+     *
+     * @return the count
+     */
+    public int getTriangleCount()
+    {
+        return indices.length / 3;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("originX", originX)
+                .add("originZ", originZ)
+                .add("vertices", getVertexCount())
+                .add("triangles", getTriangleCount())
+                .toString();
+    }
+}
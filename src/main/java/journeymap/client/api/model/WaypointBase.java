@@ -29,6 +29,7 @@ import org.apache.commons.lang3.ArrayUtils;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Internal use only.  Mods should not extend this class.
@@ -53,6 +54,12 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
     @Since(1.4)
     protected transient boolean dirty;
 
+    // Source of revisions, so that a newer revision anywhere in a delegate chain is always the highest in it
+    private static final AtomicLong REVISIONS = new AtomicLong();
+
+    private transient volatile long revision = REVISIONS.incrementAndGet();
+    private transient WaypointStyle effectiveStyle;
+
     /**
      * Constructor.
      *
@@ -78,6 +85,23 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
         setName(name);
     }
 
+    /**
+     * Copies the values set on another waypoint or group, for copy constructors.  The icon and display dimensions
+     * are copied rather than shared.
+     *
+     * @param other the source
+     */
+    protected void copyFrom(WaypointBase<?> other)
+    {
+        this.name = other.name;
+        this.color = other.color;
+        this.bgColor = other.bgColor;
+        this.icon = other.icon == null ? null : new MapImage(other.icon);
+        this.displayDims = other.displayDims == null ? null : other.displayDims.clone();
+        this.dirty = other.dirty;
+        advanceRevision();
+    }
+
     /**
      * Gets a delegate for this object, if one exists.
      *
@@ -206,14 +230,14 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
     }
 
     /**
-     * Sets the displayDims in which this should appear.
+     * Sets the displayDims in which this should appear.  The array is copied.
      *
      * @param dimensions the displayDims
      * @return this
      */
     public final T setDisplayDimensions(String... dimensions)
     {
-        this.displayDims = dimensions;
+        this.displayDims = dimensions == null ? null : dimensions.clone();
         return setDirty();
     }
 
@@ -243,7 +267,9 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
         }
         else if (!displayed && isDisplayed(dimension))
         {
-            setDisplayDimensions(ArrayUtils.removeElement(getDisplayDimensions(), dimension));
+            final DimensionKey key = DimensionKey.of(dimension);
+            final String[] dims = getDisplayDimensions();
+            setDisplayDimensions(Arrays.stream(dims).filter(dim -> !key.is(dim)).toArray(String[]::new));
         }
     }
 
@@ -251,11 +277,102 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
      * Whether the waypoint is shown in the dimension.
      *
      * @param dimension dim id
-     * @return true if dim id is in getDisplayDimensions()
+     * @return true if dim id is in getDisplayDimensions(), ignoring case
      */
     public final boolean isDisplayed(String dimension)
     {
-        return Arrays.binarySearch(getDisplayDimensions(), dimension) > -1;
+        return isDisplayed(DimensionKey.of(dimension));
+    }
+
+    /**
+     * Whether the waypoint is shown in the dimension.  This is a bit test against a cached bitset of
+     * getDisplayDimensions(), which is only rebuilt when the array changes, so it is cheap enough to call
+     * for every waypoint every frame.
+     *
+     * @param dimension dim key
+     * @return true if the dimension is in getDisplayDimensions()
+     */
+    public final boolean isDisplayed(DimensionKey dimension)
+    {
+        return getEffectiveStyle().isDisplayed(dimension);
+    }
+
+    /**
+     * Gets getDisplayDimensions() as a bitset of {@link DimensionKey#ordinal()}s.  The result is shared and
+     * must not be modified.
+     *
+     * @return the bits
+     */
+    public final long[] getDisplayDimensionBits()
+    {
+        return getEffectiveStyle().getDisplayDimensionBits();
+    }
+
+    /**
+     * Gets the color, background color, icon and display dimensions this is displayed with, as provided by its
+     * delegates where not set on this.  The result is cached until {@link #getRevision()} changes for this or any
+     * delegate, so renderers should use it rather than the individual getters, which walk the delegates each time.
+     * <p>
+     * Delegates which aren't waypoints or groups have no revision, so their values are checked on every call,
+     * though the style is still reused if they haven't changed.
+     *
+     * @return the effective style
+     */
+    public final WaypointStyle getEffectiveStyle()
+    {
+        final long chainRevision = getChainRevision();
+        WaypointStyle style = effectiveStyle;
+        if (style == null || chainRevision < 0 || style.revision != chainRevision)
+        {
+            final Integer color = getColor();
+            final Integer bgColor = getBackgroundColor();
+            final MapImage icon = getIcon();
+            final String[] dims = getDisplayDimensions();
+            style = style == null
+                    ? new WaypointStyle(color, bgColor, icon, dims, chainRevision)
+                    : style.revise(color, bgColor, icon, dims, chainRevision);
+            effectiveStyle = style;
+        }
+        return style;
+    }
+
+    /**
+     * Revision of this object's own values, which changes whenever it is set dirty.  Revisions are unique and
+     * increasing across all waypoints and groups.
+     *
+     * @return the revision
+     */
+    public final long getRevision()
+    {
+        return revision;
+    }
+
+    /**
+     * Advances the revision without setting dirty, for runtime-only changes which affect the effective style.
+     */
+    protected final void advanceRevision()
+    {
+        this.revision = REVISIONS.incrementAndGet();
+    }
+
+    /**
+     * The highest revision along the delegate chain, or -1 if a delegate can't be tracked.
+     */
+    private long getChainRevision()
+    {
+        long result = revision;
+        WaypointBase<?> current = this;
+        for (int depth = 0; current.hasDelegate(); depth++)
+        {
+            final IWaypointDisplay delegate = current.getDelegate();
+            if (!(delegate instanceof WaypointBase) || depth > 8)
+            {
+                return -1;
+            }
+            current = (WaypointBase<?>) delegate;
+            result = Math.max(result, current.revision);
+        }
+        return result;
     }
 
     /**
@@ -307,7 +424,7 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
     }
 
     /**
-     * Sets dirty.
+     * Sets dirty.  Setting it also advances {@link #getRevision()}.
      *
      * @param dirty the dirty
      * @return the dirty
@@ -315,6 +432,10 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
     public T setDirty(boolean dirty)
     {
         this.dirty = dirty;
+        if (dirty)
+        {
+            this.revision = REVISIONS.incrementAndGet();
+        }
         return (T) this;
     }
 
@@ -376,26 +497,30 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
         return displayDims != null;
     }
 
-    @Override
-    public boolean equals(Object o)
+    /**
+     * Value equality: whether the other waypoint is the same one (see {@link #equals(Object)}) with the same name,
+     * icon, colors and display dimensions, as provided by the delegate where not set on the waypoint itself.
+     * <p>
+     * {@link #equals(Object)} and {@link #hashCode()} only use the GUID, so they are cheap and stay stable while
+     * a waypoint is edited.  Use this method to find out whether an edit actually changed anything.
+     *
+     * @param other the other waypoint
+     * @return true if the same waypoint with the same content
+     */
+    public boolean contentEquals(@Nullable WaypointBase<?> other)
     {
-        if (this == o)
+        if (this == other)
         {
             return true;
         }
-        if (!(o instanceof WaypointBase))
-        {
-            return false;
-        }
-        if (!super.equals(o))
+        if (other == null || !equals(other))
         {
             return false;
         }
-        WaypointBase<?> that = (WaypointBase<?>) o;
-        return Objects.equal(getName(), that.getName()) &&
-                Objects.equal(getIcon(), that.getIcon()) &&
-                Objects.equal(getColor(), that.getColor()) &&
-                Objects.equal(getBackgroundColor(), that.getBackgroundColor()) &&
-                Arrays.equals(getDisplayDimensions(), that.getDisplayDimensions());
+        return Objects.equal(getName(), other.getName()) &&
+                Objects.equal(getColor(), other.getColor()) &&
+                Objects.equal(getBackgroundColor(), other.getBackgroundColor()) &&
+                Objects.equal(getIcon(), other.getIcon()) &&
+                Arrays.equals(getDisplayDimensions(), other.getDisplayDimensions());
     }
 }
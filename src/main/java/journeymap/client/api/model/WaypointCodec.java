@@ -0,0 +1,802 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.model;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import journeymap.client.api.display.Waypoint;
+import journeymap.client.api.display.WaypointGroup;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary form for {@link Waypoint}s and {@link WaypointGroup}s, which is read and written one record at a
+ * time, as a faster alternative to the JSON form.
+ * <p>
+ * A stream starts with a header: {@link #MAGIC}, {@link #FORMAT_VERSION}, and the {@link Waypoint#VERSION} and
+ * {@link WaypointGroup#VERSION} it was written with.  Then come records, each a type byte followed by a
+ * length-prefixed payload, up to an END byte:
+ * <ul>
+ * <li>STRING: UTF-8 bytes, appended to the string table.  Mod ids, ids, names, dimensions and icon locations are
+ * written as 1-based references into the table (0 for null), so repeated values are only stored once.</li>
+ * <li>GROUP: a group, appended to the group table.</li>
+ * <li>WAYPOINT: a waypoint, which refers to its group by its 1-based index in the group table.</li>
+ * </ul>
+ * Fields are only ever added to the end of a payload, and unknown record types are skipped, so adding either
+ * leaves {@link #FORMAT_VERSION} as it is and older decoders still read the stream.  The format version only
+ * changes for a layout older decoders can't read, and a decoder rejects a stream with a higher format version than
+ * its own.  Integers are varints, zigzag-encoded where they may be negative.
+ * <p>
+ * As with the JSON form, only persisted fields are written.  Colors, icons and display dimensions are written as
+ * set on the waypoint itself, not as provided by its group.
+ * <p>
+ * Encoders and decoders are not thread-safe.
+ */
+public final class WaypointCodec
+{
+    /**
+     * First four bytes of a stream: "JMWP".
+     */
+    public static final int MAGIC = 0x4A4D5750;
+
+    /**
+     * Version of the record layout, changed only when older decoders couldn't read it.  Streams with a higher
+     * version are rejected.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int END = 0;
+    private static final int STRING = 1;
+    private static final int GROUP = 2;
+    private static final int WAYPOINT = 3;
+
+    // Waypoint flags
+    private static final int PERSISTENT = 1;
+    private static final int EDITABLE = 2;
+    private static final int ENABLED = 4;
+
+    // Optional WaypointBase fields present
+    private static final int HAS_COLOR = 1;
+    private static final int HAS_BG_COLOR = 2;
+    private static final int HAS_ICON = 4;
+    private static final int HAS_DISPLAY_DIMS = 8;
+
+    // Optional MapImage fields present
+    private static final int HAS_ANCHOR_X = 1;
+    private static final int HAS_ANCHOR_Y = 2;
+
+    private WaypointCodec()
+    {
+    }
+
+    /**
+     * Writes waypoints, and the groups they belong to, as a complete stream.  The output stream is flushed but
+     * not closed.
+     *
+     * @param out       the output
+     * @param waypoints the waypoints
+     * @throws IOException if the output fails
+     */
+    public static void write(OutputStream out, Iterable<Waypoint> waypoints) throws IOException
+    {
+        final Encoder encoder = new Encoder(out);
+        for (final Waypoint waypoint : waypoints)
+        {
+            encoder.write(waypoint);
+        }
+        encoder.finish();
+    }
+
+    /**
+     * Reads all the waypoints in a stream.  The input stream is not closed.
+     *
+     * @param in the input
+     * @return the waypoints, in the order written
+     * @throws IOException if the input fails or isn't a valid stream
+     */
+    public static List<Waypoint> read(InputStream in) throws IOException
+    {
+        final Decoder decoder = new Decoder(in);
+        final List<Waypoint> waypoints = new ArrayList<>();
+        Waypoint waypoint;
+        while ((waypoint = decoder.next()) != null)
+        {
+            waypoints.add(waypoint);
+        }
+        return waypoints;
+    }
+
+    /**
+     * Converts waypoints from the JSON form to a binary stream.  The JSON may be a single waypoint or an array
+     * of them, and is read one waypoint at a time with Gson, using {@link Waypoint#VERSION}.  Groups with the same
+     * mod id and id are written once.  Neither stream is closed.
+     *
+     * @param json the JSON input
+     * @param out  the binary output
+     * @return the number of waypoints converted
+     * @throws IOException if either stream fails or the JSON isn't valid
+     */
+    public static int convertJson(Reader json, OutputStream out) throws IOException
+    {
+        final Gson gson = new GsonBuilder().setVersion(Waypoint.VERSION).create();
+        final Encoder encoder = new Encoder(out);
+        final JsonReader reader = new JsonReader(json);
+        int count = 0;
+        try
+        {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY)
+            {
+                reader.beginArray();
+                while (reader.hasNext())
+                {
+                    encoder.write(waypointFromJson(gson, reader));
+                    count++;
+                }
+                reader.endArray();
+            }
+            else
+            {
+                encoder.write(waypointFromJson(gson, reader));
+                count++;
+            }
+        }
+        catch (JsonParseException | IllegalStateException e)
+        {
+            throw new IOException("Invalid waypoint JSON", e);
+        }
+        encoder.finish();
+        return count;
+    }
+
+    private static Waypoint waypointFromJson(Gson gson, JsonReader reader)
+    {
+        final Waypoint waypoint = gson.fromJson(reader, Waypoint.class);
+        if (waypoint == null || waypoint.getModId() == null || waypoint.getId() == null
+                || waypoint.getDimension() == null || waypoint.getPosition() == null)
+        {
+            throw new JsonParseException("Waypoint needs a modId, id, dim and pos");
+        }
+        return waypoint;
+    }
+
+    /**
+     * Writes a stream of waypoints.  Each waypoint's group, and any strings not seen before, are written just
+     * ahead of it.
+     */
+    public static final class Encoder implements Closeable, Flushable
+    {
+        private final OutputStream out;
+        private final Buffer payload = new Buffer();
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<String, Integer> groups = new HashMap<>();
+        private boolean finished;
+
+        /**
+         * Constructor.  Writes the header.
+         *
+         * @param out the output
+         * @throws IOException if the output fails
+         */
+        public Encoder(OutputStream out) throws IOException
+        {
+            this.out = new BufferedOutputStream(out);
+            payload.writeInt(MAGIC);
+            payload.writeVarInt(FORMAT_VERSION);
+            payload.writeDouble(Waypoint.VERSION);
+            payload.writeDouble(WaypointGroup.VERSION);
+            payload.writeTo(this.out);
+        }
+
+        /**
+         * Writes a waypoint, and its group if it hasn't already been written.
+         *
+         * @param waypoint the waypoint
+         * @throws IOException if the output fails
+         */
+        public void write(Waypoint waypoint) throws IOException
+        {
+            checkOpen();
+            final int group = waypoint.getGroup() == null ? 0 : groupRef(waypoint.getGroup());
+
+            payload.reset();
+            payload.writeVarInt(stringRef(waypoint.getModId()));
+            payload.writeVarInt(stringRef(waypoint.getId()));
+            payload.writeVarInt(stringRef(waypoint.name));
+            payload.writeVarInt(stringRef(waypoint.getDimension()));
+            final BlockPos pos = waypoint.getPosition();
+            payload.writeZigZag(pos.getX());
+            payload.writeZigZag(pos.getY());
+            payload.writeZigZag(pos.getZ());
+            payload.writeVarInt(group);
+            payload.writeByte((waypoint.isPersistent() ? PERSISTENT : 0)
+                    | (waypoint.isEditable() ? EDITABLE : 0)
+                    | (waypoint.isEnabled() ? ENABLED : 0));
+            writeBase(waypoint);
+            writeRecord(WAYPOINT);
+        }
+
+        /**
+         * Writes a group, if it hasn't already been written.  Groups are written automatically with their
+         * waypoints, so this is only needed for groups without any.
+         *
+         * @param group the group
+         * @throws IOException if the output fails
+         */
+        public void write(WaypointGroup group) throws IOException
+        {
+            checkOpen();
+            groupRef(group);
+        }
+
+        /**
+         * Writes the end of the stream and flushes it, without closing it.
+         *
+         * @throws IOException if the output fails
+         */
+        public void finish() throws IOException
+        {
+            if (!finished)
+            {
+                out.write(END);
+                out.flush();
+                finished = true;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            out.flush();
+        }
+
+        /**
+         * Finishes and closes the stream.
+         *
+         * @throws IOException if the output fails
+         */
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                finish();
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+
+        private int groupRef(WaypointGroup group) throws IOException
+        {
+            final Integer existing = groups.get(group.getGuid());
+            if (existing != null)
+            {
+                return existing;
+            }
+
+            payload.reset();
+            payload.writeVarInt(stringRef(group.getModId()));
+            payload.writeVarInt(stringRef(group.getId()));
+            payload.writeVarInt(stringRef(group.name));
+            payload.writeZigZag(group.getDisplayOrder());
+            writeBase(group);
+            writeRecord(GROUP);
+
+            final int ref = groups.size() + 1;
+            groups.put(group.getGuid(), ref);
+            return ref;
+        }
+
+        /**
+         * Writes the optional fields shared by waypoints and groups.
+         */
+        private void writeBase(WaypointBase<?> base) throws IOException
+        {
+            payload.writeByte((base.color != null ? HAS_COLOR : 0)
+                    | (base.bgColor != null ? HAS_BG_COLOR : 0)
+                    | (base.icon != null ? HAS_ICON : 0)
+                    | (base.displayDims != null ? HAS_DISPLAY_DIMS : 0));
+            if (base.color != null)
+            {
+                payload.writeInt(base.color);
+            }
+            if (base.bgColor != null)
+            {
+                payload.writeInt(base.bgColor);
+            }
+            if (base.icon != null)
+            {
+                final MapImage icon = base.icon;
+                final ResourceLocation location = icon.getImageLocation();
+                payload.writeVarInt(stringRef(location == null ? null : location.toString()));
+                payload.writeInt(icon.getColor());
+                payload.writeFloat(icon.getOpacity());
+                payload.writeZigZag(icon.getTextureX());
+                payload.writeZigZag(icon.getTextureY());
+                payload.writeZigZag(icon.getTextureWidth());
+                payload.writeZigZag(icon.getTextureHeight());
+                payload.writeZigZag(icon.getRotation());
+                payload.writeDouble(icon.getDisplayWidth());
+                payload.writeDouble(icon.getDisplayHeight());
+                final Double anchorX = icon.getRawAnchorX();
+                final Double anchorY = icon.getRawAnchorY();
+                payload.writeByte((anchorX != null ? HAS_ANCHOR_X : 0) | (anchorY != null ? HAS_ANCHOR_Y : 0));
+                if (anchorX != null)
+                {
+                    payload.writeDouble(anchorX);
+                }
+                if (anchorY != null)
+                {
+                    payload.writeDouble(anchorY);
+                }
+            }
+            if (base.displayDims != null)
+            {
+                payload.writeVarInt(base.displayDims.length);
+                for (final String dim : base.displayDims)
+                {
+                    payload.writeVarInt(stringRef(dim));
+                }
+            }
+        }
+
+        /**
+         * Gets the reference for a string, writing it first if it's new.  This goes straight to the output, so
+         * it always comes before the record being built.
+         */
+        private int stringRef(@Nullable String value) throws IOException
+        {
+            if (value == null)
+            {
+                return 0;
+            }
+            final Integer existing = strings.get(value);
+            if (existing != null)
+            {
+                return existing;
+            }
+
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.write(STRING);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+
+            final int ref = strings.size() + 1;
+            strings.put(value, ref);
+            return ref;
+        }
+
+        private void writeRecord(int type) throws IOException
+        {
+            out.write(type);
+            writeVarInt(out, payload.size());
+            payload.writeTo(out);
+        }
+
+        private void checkOpen()
+        {
+            if (finished)
+            {
+                throw new IllegalStateException("Waypoint stream already finished");
+            }
+        }
+    }
+
+    /**
+     * Reads a stream of waypoints one at a time.
+     */
+    public static final class Decoder implements Closeable
+    {
+        private final InputStream in;
+        private final double waypointVersion;
+        private final double groupVersion;
+        private final List<String> strings = new ArrayList<>();
+        private final List<WaypointGroup> groups = new ArrayList<>();
+        private byte[] record = new byte[256];
+        private int position;
+        private int limit;
+        private boolean ended;
+
+        /**
+         * Constructor.  Reads the header.
+         *
+         * @param in the input
+         * @throws IOException if the input fails, isn't a waypoint stream, or has a newer format version
+         */
+        public Decoder(InputStream in) throws IOException
+        {
+            this.in = new BufferedInputStream(in);
+            fill(4);
+            if (readInt() != MAGIC)
+            {
+                throw new IOException("Not a waypoint stream");
+            }
+            final int formatVersion = WaypointCodec.readVarInt(this.in);
+            if (formatVersion > FORMAT_VERSION)
+            {
+                throw new IOException("Unsupported waypoint stream version " + formatVersion);
+            }
+            fill(16);
+            this.waypointVersion = readDouble();
+            this.groupVersion = readDouble();
+        }
+
+        /**
+         * The {@link Waypoint#VERSION} the stream was written with.
+         *
+         * @return the version
+         */
+        public double getWaypointVersion()
+        {
+            return waypointVersion;
+        }
+
+        /**
+         * The {@link WaypointGroup#VERSION} the stream was written with.
+         *
+         * @return the version
+         */
+        public double getGroupVersion()
+        {
+            return groupVersion;
+        }
+
+        /**
+         * Gets the groups read so far, including those without waypoints once the stream has been read to the end.
+         *
+         * @return an unmodifiable list of groups
+         */
+        public List<WaypointGroup> getGroups()
+        {
+            return Collections.unmodifiableList(groups);
+        }
+
+        /**
+         * Reads the next waypoint.
+         *
+         * @return the waypoint, or null at the end of the stream
+         * @throws IOException if the input fails or the stream is invalid
+         */
+        @Nullable
+        public Waypoint next() throws IOException
+        {
+            while (!ended)
+            {
+                final int type = in.read();
+                if (type == -1)
+                {
+                    throw new EOFException("Waypoint stream ended without an end record");
+                }
+                if (type == END)
+                {
+                    ended = true;
+                    break;
+                }
+
+                fill(WaypointCodec.readVarInt(in));
+                switch (type)
+                {
+                    case STRING:
+                        strings.add(new String(record, 0, limit, StandardCharsets.UTF_8));
+                        break;
+
+                    case GROUP:
+                        groups.add(readGroup());
+                        break;
+
+                    case WAYPOINT:
+                        return readWaypoint();
+
+                    default:
+                        // Added in a later version; skip it
+                        break;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+
+        private WaypointGroup readGroup() throws IOException
+        {
+            final WaypointGroup group = new WaypointGroup(readString(), readString(), readString());
+            group.setDisplayOrder(readZigZag());
+            readBase(group);
+            return group.setDirty(false);
+        }
+
+        private Waypoint readWaypoint() throws IOException
+        {
+            final String modId = readString();
+            final String id = readString();
+            final String name = readString();
+            final String dimension = readString();
+            final BlockPos pos = new BlockPos(readZigZag(), readZigZag(), readZigZag());
+            final Waypoint waypoint = new Waypoint(modId, id, name, dimension, pos);
+
+            final int group = readVarInt();
+            if (group > 0)
+            {
+                if (group > groups.size())
+                {
+                    throw new IOException("Waypoint refers to unknown group " + group);
+                }
+                waypoint.setGroup(groups.get(group - 1));
+            }
+
+            final int flags = readByte();
+            waypoint.setPersistent((flags & PERSISTENT) != 0);
+            waypoint.setEditable((flags & EDITABLE) != 0);
+            waypoint.setEnabled((flags & ENABLED) != 0);
+            readBase(waypoint);
+            return waypoint.setDirty(false);
+        }
+
+        private void readBase(WaypointBase<?> base) throws IOException
+        {
+            final int present = readByte();
+            if ((present & HAS_COLOR) != 0)
+            {
+                base.setColor(readInt());
+            }
+            if ((present & HAS_BG_COLOR) != 0)
+            {
+                base.setBackgroundColor(readInt());
+            }
+            if ((present & HAS_ICON) != 0)
+            {
+                final String location = readString();
+                final int color = readInt();
+                final float opacity = Float.intBitsToFloat(readInt());
+                final MapImage icon = new MapImage(location == null ? null : new ResourceLocation(location),
+                        readZigZag(), readZigZag(), readZigZag(), readZigZag(), color, opacity);
+                icon.setRotation(readZigZag());
+                icon.setDisplayWidth(readDouble());
+                icon.setDisplayHeight(readDouble());
+                final int anchors = readByte();
+                if ((anchors & HAS_ANCHOR_X) != 0)
+                {
+                    icon.setAnchorX(readDouble());
+                }
+                if ((anchors & HAS_ANCHOR_Y) != 0)
+                {
+                    icon.setAnchorY(readDouble());
+                }
+                base.setIcon(icon);
+            }
+            if ((present & HAS_DISPLAY_DIMS) != 0)
+            {
+                final String[] dims = new String[readVarInt()];
+                for (int i = 0; i < dims.length; i++)
+                {
+                    dims[i] = readString();
+                }
+                base.setDisplayDimensions(dims);
+            }
+        }
+
+        /**
+         * Reads the next length bytes of the stream into the record buffer.
+         */
+        private void fill(int length) throws IOException
+        {
+            if (length > record.length)
+            {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            int read = 0;
+            while (read < length)
+            {
+                final int count = in.read(record, read, length - read);
+                if (count < 0)
+                {
+                    throw new EOFException("Waypoint stream truncated");
+                }
+                read += count;
+            }
+            position = 0;
+            limit = length;
+        }
+
+        @Nullable
+        private String readString() throws IOException
+        {
+            final int ref = readVarInt();
+            if (ref > strings.size())
+            {
+                throw new IOException("Waypoint stream refers to unknown string " + ref);
+            }
+            return ref == 0 ? null : strings.get(ref - 1);
+        }
+
+        private int readByte() throws IOException
+        {
+            if (position >= limit)
+            {
+                throw new EOFException("Waypoint record truncated");
+            }
+            return record[position++] & 0xFF;
+        }
+
+        private int readVarInt() throws IOException
+        {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7)
+            {
+                final int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in waypoint stream");
+        }
+
+        private int readZigZag() throws IOException
+        {
+            final int value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readInt() throws IOException
+        {
+            if (limit - position < 4)
+            {
+                throw new EOFException("Waypoint record truncated");
+            }
+            final int value = ((record[position] & 0xFF) << 24) | ((record[position + 1] & 0xFF) << 16)
+                    | ((record[position + 2] & 0xFF) << 8) | (record[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        private double readDouble() throws IOException
+        {
+            final long high = readInt() & 0xFFFFFFFFL;
+            final long low = readInt() & 0xFFFFFFFFL;
+            return Double.longBitsToDouble((high << 32) | low);
+        }
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            final int b = in.read();
+            if (b < 0)
+            {
+                throw new EOFException("Waypoint stream truncated");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in waypoint stream");
+    }
+
+    /**
+     * A growable byte array for building a record before its length is known.
+     */
+    private static final class Buffer
+    {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void reset()
+        {
+            size = 0;
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        void writeByte(int value)
+        {
+            if (size == bytes.length)
+            {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarInt(int value)
+        {
+            while ((value & ~0x7F) != 0)
+            {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeZigZag(int value)
+        {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        void writeInt(int value)
+        {
+            writeByte(value >>> 24);
+            writeByte(value >>> 16);
+            writeByte(value >>> 8);
+            writeByte(value);
+        }
+
+        void writeFloat(float value)
+        {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        void writeDouble(double value)
+        {
+            final long bits = Double.doubleToLongBits(value);
+            writeInt((int) (bits >>> 32));
+            writeInt((int) bits);
+        }
+
+        void writeTo(OutputStream out) throws IOException
+        {
+            out.write(bytes, 0, size);
+        }
+    }
+}
@@ -0,0 +1,884 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.model;
+
+import journeymap.client.api.display.Waypoint;
+import journeymap.client.api.display.WaypointGroup;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * A read-only, memory-mapped file of waypoints, which can be opened without reading them and queried in place.
+ * Each waypoint is a fixed-width record, so its position, dimension and display dimensions can be read by index
+ * without creating any objects, and a full {@link Waypoint} is only built by {@link #getWaypoint(int)}, when it is
+ * needed for display or editing.  Opening a snapshot takes the same time however many waypoints it holds.
+ * <p>
+ * The file starts with a header, followed by fixed-width group records, a table of distinct dimensions, a table of
+ * distinct display dimension lists, fixed-width waypoint records, an extras area for icons and lists, and a pool of
+ * UTF-8 strings.  Strings are stored once and referred to by their offset in the pool.  Records refer to dimensions
+ * and lists by their index in the tables, which are resolved once each, so filtering by dimension is a few array
+ * reads per waypoint.  Missing references are -1.
+ * <p>
+ * As with {@link WaypointCodec}, colors, icons and display dimensions are stored as set on the waypoint itself, not
+ * as provided by its group.  Snapshots are immutable: to change a waypoint, materialize it and save it elsewhere,
+ * such as in a {@link journeymap.client.api.util.WaypointJournal}, then write a new snapshot.
+ * <p>
+ * Snapshots aren't kept behind a {@link journeymap.client.api.util.WaypointStore}, because the store holds a copy
+ * of every Waypoint and indexes each one as it is added, so loading a snapshot into it would build every waypoint
+ * and lose the constant-time open.  A snapshot is for the many saved waypoints which are rarely shown: query it in
+ * place, and add only the waypoints being displayed or edited to a store.
+ * <p>
+ * Each {@link #write} creates a new file, named with a generation number, rather than replacing the one which may
+ * still be mapped, and {@link #latest} finds the newest.  Old generations are deleted once they are no longer
+ * mapped, which happens when their snapshots are garbage collected.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class WaypointSnapshot
+{
+    /**
+     * First four bytes of a snapshot file: "JMWS".
+     */
+    public static final int MAGIC = 0x4A4D5753;
+
+    /**
+     * Version of the file layout.  Files with a different version are rejected.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+
+    // Waypoint record: modId, id, name, dim, x, y, z, group, color, bgColor, displayDims, icon, flags
+    private static final int RECORD_SIZE = 52;
+    private static final int MOD_ID = 0;
+    private static final int ID = 4;
+    private static final int NAME = 8;
+    private static final int DIM = 12;
+    private static final int X = 16;
+    private static final int Y = 20;
+    private static final int Z = 24;
+    private static final int GROUP = 28;
+    private static final int COLOR = 32;
+    private static final int BG_COLOR = 36;
+    private static final int DISPLAY_DIMS = 40;
+    private static final int ICON = 44;
+    private static final int FLAGS = 48;
+
+    // Group record: modId, id, name, order, color, bgColor, displayDims, icon, flags
+    private static final int GROUP_SIZE = 36;
+    private static final int GROUP_ORDER = 12;
+    private static final int GROUP_COLOR = 16;
+    private static final int GROUP_BG_COLOR = 20;
+    private static final int GROUP_DISPLAY_DIMS = 24;
+    private static final int GROUP_ICON = 28;
+    private static final int GROUP_FLAGS = 32;
+
+    // Flags
+    private static final int PERSISTENT = 1;
+    private static final int EDITABLE = 2;
+    private static final int ENABLED = 4;
+    private static final int HAS_COLOR = 8;
+    private static final int HAS_BG_COLOR = 16;
+
+    // Icon in the extras area: location, color, opacity, textureX, textureY, textureWidth, textureHeight,
+    // rotation, displayWidth, displayHeight, anchor flags, anchorX, anchorY
+    private static final int ICON_SIZE = 68;
+    private static final int HAS_ANCHOR_X = 1;
+    private static final int HAS_ANCHOR_Y = 2;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int groupCount;
+    private final int groupsOffset;
+    private final int dimensionsOffset;
+    private final int listsOffset;
+    private final int recordsOffset;
+    private final int extrasOffset;
+    private final int poolOffset;
+    private final double waypointVersion;
+
+    // Resolved on first use, by table index
+    private final AtomicReferenceArray<DimensionKey> dimensionKeys;
+    private final AtomicReferenceArray<long[]> listBits;
+    private final AtomicReferenceArray<WaypointGroup> groups;
+    private final Map<Integer, Waypoint> waypoints = new ConcurrentHashMap<>();
+
+    private WaypointSnapshot(ByteBuffer buffer, Path file) throws IOException
+    {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a waypoint snapshot: " + file);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported waypoint snapshot version " + buffer.getInt(4) + ": " + file);
+        }
+        this.waypointVersion = buffer.getDouble(8);
+        this.count = buffer.getInt(16);
+        this.groupCount = buffer.getInt(20);
+        final int dimensionCount = buffer.getInt(24);
+        final int listCount = buffer.getInt(28);
+        this.groupsOffset = buffer.getInt(32);
+        this.dimensionsOffset = buffer.getInt(36);
+        this.listsOffset = buffer.getInt(40);
+        this.recordsOffset = buffer.getInt(44);
+        this.extrasOffset = buffer.getInt(48);
+        this.poolOffset = buffer.getInt(52);
+        final int poolLength = buffer.getInt(56);
+        if (count < 0 || groupCount < 0 || dimensionCount < 0 || listCount < 0
+                || groupsOffset != HEADER_SIZE
+                || dimensionsOffset != groupsOffset + groupCount * GROUP_SIZE
+                || listsOffset != dimensionsOffset + dimensionCount * 4
+                || recordsOffset != listsOffset + listCount * 4
+                || extrasOffset != recordsOffset + count * RECORD_SIZE
+                || poolOffset < extrasOffset
+                || poolLength < 0 || poolOffset + poolLength != buffer.capacity())
+        {
+            throw new IOException("Waypoint snapshot is corrupt: " + file);
+        }
+        this.dimensionKeys = new AtomicReferenceArray<>(dimensionCount);
+        this.listBits = new AtomicReferenceArray<>(listCount);
+        this.groups = new AtomicReferenceArray<>(groupCount);
+    }
+
+    /**
+     * Maps a snapshot file.  Only the header is read.
+     * <p>
+     * The file stays mapped until the snapshot is garbage collected, and on some platforms a mapped file can't be
+     * replaced or deleted until then, which is why {@link #write} never overwrites a snapshot.
+     *
+     * @param file the file, usually from {@link #latest}
+     * @return the snapshot
+     * @throws IOException if the file can't be read or isn't a snapshot
+     */
+    public static WaypointSnapshot open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            // The mapping stays valid after the channel is closed
+            return new WaypointSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file);
+        }
+    }
+
+    /**
+     * Finds the newest snapshot written by {@link #write} for a base file.
+     *
+     * @param file the base file
+     * @return the newest snapshot file, or null if there is none
+     * @throws IOException if the directory can't be read
+     */
+    @Nullable
+    public static Path latest(Path file) throws IOException
+    {
+        final long generation = latestGeneration(file);
+        return generation < 0 ? null : generationFile(file, generation);
+    }
+
+    /**
+     * Writes waypoints, and the groups they belong to, to a new snapshot file next to the base file, named after it
+     * with a generation number, such as {@code waypoints.jmws.3}.  The file is written alongside and then moved
+     * into place, so readers never see a partial file, and snapshots which are already open are never replaced.
+     * <p>
+     * Older generations are then deleted.  One which is still mapped and can't be deleted yet is left, and deleted
+     * by a later write.
+     *
+     * @param file      the base file
+     * @param waypoints the waypoints
+     * @return the snapshot file written
+     * @throws IOException if the file can't be written
+     */
+    public static Path write(Path file, Collection<Waypoint> waypoints) throws IOException
+    {
+        final long generation = latestGeneration(file) + 1;
+        final Path target = generationFile(file, generation);
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp))
+        {
+            new Writer(waypoints).writeTo(out);
+        }
+        try
+        {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(temp, target);
+        }
+        deleteBefore(file, generation);
+        return target;
+    }
+
+    private static Path generationFile(Path file, long generation)
+    {
+        return file.resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    /**
+     * Generation number of a snapshot file, or -1 if it isn't one for the base file.
+     */
+    private static long generationOf(Path file, Path candidate)
+    {
+        final String prefix = file.getFileName() + ".";
+        final String name = candidate.getFileName().toString();
+        if (!name.startsWith(prefix) || name.length() == prefix.length())
+        {
+            return -1;
+        }
+        for (int i = prefix.length(); i < name.length(); i++)
+        {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9')
+            {
+                return -1;
+            }
+        }
+        try
+        {
+            return Long.parseLong(name.substring(prefix.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    private static List<Path> siblings(Path file) throws IOException
+    {
+        final Path dir = file.toAbsolutePath().getParent();
+        if (dir == null || !Files.isDirectory(dir))
+        {
+            return List.of();
+        }
+        try (Stream<Path> list = Files.list(dir))
+        {
+            return list.toList();
+        }
+    }
+
+    private static long latestGeneration(Path file) throws IOException
+    {
+        long latest = -1;
+        for (Path sibling : siblings(file))
+        {
+            latest = Math.max(latest, generationOf(file, sibling));
+        }
+        return latest;
+    }
+
+    private static void deleteBefore(Path file, long generation) throws IOException
+    {
+        for (Path sibling : siblings(file))
+        {
+            final long old = generationOf(file, sibling);
+            if (old >= 0 && old < generation)
+            {
+                try
+                {
+                    Files.deleteIfExists(sibling);
+                }
+                catch (IOException e)
+                {
+                    // Still mapped, so it's left for a later write
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of waypoints.
+     *
+     * @return the count
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * The {@link Waypoint#VERSION} the snapshot was written with.
+     *
+     * @return the version
+     */
+    public double getWaypointVersion()
+    {
+        return waypointVersion;
+    }
+
+    /**
+     * Mod id of a waypoint.
+     *
+     * @param index the waypoint index
+     * @return the mod id
+     */
+    public String getModId(int index)
+    {
+        return string(recordInt(index, MOD_ID));
+    }
+
+    /**
+     * Id of a waypoint, unique to its mod.
+     *
+     * @param index the waypoint index
+     * @return the id
+     */
+    public String getId(int index)
+    {
+        return string(recordInt(index, ID));
+    }
+
+    /**
+     * Name of a waypoint.
+     *
+     * @param index the waypoint index
+     * @return the name
+     */
+    public String getName(int index)
+    {
+        return string(recordInt(index, NAME));
+    }
+
+    /**
+     * Dimension of a waypoint, as per {@link Waypoint#getDimension()}.
+     *
+     * @param index the waypoint index
+     * @return the dimension name
+     */
+    public String getDimension(int index)
+    {
+        return string(buffer.getInt(dimensionsOffset + recordInt(index, DIM) * 4));
+    }
+
+    /**
+     * Dimension of a waypoint, without decoding the name after the first time it's seen.
+     *
+     * @param index the waypoint index
+     * @return the dimension key
+     */
+    public DimensionKey getDimensionKey(int index)
+    {
+        return dimensionKey(recordInt(index, DIM));
+    }
+
+    /**
+     * X coordinate of a waypoint in its own dimension.
+     *
+     * @param index the waypoint index
+     * @return x
+     */
+    public int getX(int index)
+    {
+        return recordInt(index, X);
+    }
+
+    /**
+     * Y coordinate of a waypoint.
+     *
+     * @param index the waypoint index
+     * @return y
+     */
+    public int getY(int index)
+    {
+        return recordInt(index, Y);
+    }
+
+    /**
+     * Z coordinate of a waypoint in its own dimension.
+     *
+     * @param index the waypoint index
+     * @return z
+     */
+    public int getZ(int index)
+    {
+        return recordInt(index, Z);
+    }
+
+    /**
+     * Whether a waypoint is enabled.
+     *
+     * @param index the waypoint index
+     * @return true if enabled
+     */
+    public boolean isEnabled(int index)
+    {
+        return (recordInt(index, FLAGS) & ENABLED) != 0;
+    }
+
+    /**
+     * Whether a waypoint is displayed in a dimension, as per {@link WaypointBase#isDisplayed(DimensionKey)}:
+     * using its own display dimensions, else its group's, else just its own dimension.
+     *
+     * @param index     the waypoint index
+     * @param dimension the dimension
+     * @return true if displayed
+     */
+    public boolean isDisplayed(int index, DimensionKey dimension)
+    {
+        int list = recordInt(index, DISPLAY_DIMS);
+        if (list < 0)
+        {
+            final int group = recordInt(index, GROUP);
+            if (group >= 0)
+            {
+                list = buffer.getInt(groupsOffset + group * GROUP_SIZE + GROUP_DISPLAY_DIMS);
+            }
+        }
+        if (list < 0)
+        {
+            return getDimensionKey(index) == dimension;
+        }
+
+        long[] bits = listBits.get(list);
+        if (bits == null)
+        {
+            bits = DimensionKey.toBits(stringList(list));
+            listBits.set(list, bits);
+        }
+        return dimension.isIn(bits);
+    }
+
+    /**
+     * Visits the index of every waypoint displayed in a dimension.  Nothing is decoded but the few distinct
+     * dimension names, so this is cheap enough to do per frame.
+     *
+     * @param dimension the dimension
+     * @param consumer  receives each index
+     */
+    public void forEachDisplayed(DimensionKey dimension, IntConsumer consumer)
+    {
+        for (int index = 0; index < count; index++)
+        {
+            if (isDisplayed(index, dimension))
+            {
+                consumer.accept(index);
+            }
+        }
+    }
+
+    /**
+     * Finds a waypoint by mod id and id.  This compares the stored strings with a scan, so callers looking up many
+     * waypoints should build their own index.
+     *
+     * @param modId the mod id
+     * @param id    the id
+     * @return the index, or -1 if not found
+     */
+    public int indexOf(String modId, String id)
+    {
+        final byte[] modIdBytes = modId.getBytes(StandardCharsets.UTF_8);
+        final byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        for (int index = 0; index < count; index++)
+        {
+            if (stringEquals(recordInt(index, ID), idBytes) && stringEquals(recordInt(index, MOD_ID), modIdBytes))
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the full waypoint, the first time it's asked for.  Waypoints in the same group share one
+     * {@link WaypointGroup}.
+     *
+     * @param index the waypoint index
+     * @return the waypoint
+     */
+    public Waypoint getWaypoint(int index)
+    {
+        checkIndex(index);
+        return waypoints.computeIfAbsent(index, this::materialize);
+    }
+
+    private Waypoint materialize(int index)
+    {
+        final Waypoint waypoint = new Waypoint(getModId(index), getId(index), getName(index), getDimension(index),
+                new BlockPos(getX(index), getY(index), getZ(index)));
+        final int group = recordInt(index, GROUP);
+        if (group >= 0)
+        {
+            waypoint.setGroup(getGroup(group));
+        }
+        final int flags = recordInt(index, FLAGS);
+        waypoint.setPersistent((flags & PERSISTENT) != 0);
+        waypoint.setEditable((flags & EDITABLE) != 0);
+        waypoint.setEnabled((flags & ENABLED) != 0);
+        readBase(waypoint, recordsOffset + index * RECORD_SIZE, COLOR, BG_COLOR, DISPLAY_DIMS, ICON, flags);
+        return waypoint.setDirty(false);
+    }
+
+    private WaypointGroup getGroup(int index)
+    {
+        WaypointGroup group = groups.get(index);
+        if (group == null)
+        {
+            final int offset = groupsOffset + index * GROUP_SIZE;
+            group = new WaypointGroup(string(buffer.getInt(offset + MOD_ID)), string(buffer.getInt(offset + ID)),
+                    string(buffer.getInt(offset + NAME)));
+            group.setDisplayOrder(buffer.getInt(offset + GROUP_ORDER));
+            readBase(group, offset, GROUP_COLOR, GROUP_BG_COLOR, GROUP_DISPLAY_DIMS, GROUP_ICON,
+                    buffer.getInt(offset + GROUP_FLAGS));
+            group.setDirty(false);
+            if (!groups.compareAndSet(index, null, group))
+            {
+                group = groups.get(index);
+            }
+        }
+        return group;
+    }
+
+    private void readBase(WaypointBase<?> base, int offset, int color, int bgColor, int displayDims, int icon, int flags)
+    {
+        if ((flags & HAS_COLOR) != 0)
+        {
+            base.setColor(buffer.getInt(offset + color));
+        }
+        if ((flags & HAS_BG_COLOR) != 0)
+        {
+            base.setBackgroundColor(buffer.getInt(offset + bgColor));
+        }
+        final int list = buffer.getInt(offset + displayDims);
+        if (list >= 0)
+        {
+            base.setDisplayDimensions(stringList(list));
+        }
+        final int iconOffset = buffer.getInt(offset + icon);
+        if (iconOffset >= 0)
+        {
+            base.setIcon(readIcon(extrasOffset + iconOffset));
+        }
+    }
+
+    private MapImage readIcon(int offset)
+    {
+        final int location = buffer.getInt(offset);
+        final MapImage icon = new MapImage(location < 0 ? null : new ResourceLocation(string(location)),
+                buffer.getInt(offset + 12), buffer.getInt(offset + 16), buffer.getInt(offset + 20),
+                buffer.getInt(offset + 24), buffer.getInt(offset + 4), buffer.getFloat(offset + 8));
+        icon.setRotation(buffer.getInt(offset + 28));
+        icon.setDisplayWidth(buffer.getDouble(offset + 32));
+        icon.setDisplayHeight(buffer.getDouble(offset + 40));
+        final int anchors = buffer.getInt(offset + 48);
+        if ((anchors & HAS_ANCHOR_X) != 0)
+        {
+            icon.setAnchorX(buffer.getDouble(offset + 52));
+        }
+        if ((anchors & HAS_ANCHOR_Y) != 0)
+        {
+            icon.setAnchorY(buffer.getDouble(offset + 60));
+        }
+        return icon;
+    }
+
+    private int recordInt(int index, int field)
+    {
+        checkIndex(index);
+        return buffer.getInt(recordsOffset + index * RECORD_SIZE + field);
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= count)
+        {
+            throw new IndexOutOfBoundsException("Waypoint index " + index + " out of bounds for " + count);
+        }
+    }
+
+    private DimensionKey dimensionKey(int dimension)
+    {
+        DimensionKey key = dimensionKeys.get(dimension);
+        if (key == null)
+        {
+            key = DimensionKey.of(string(buffer.getInt(dimensionsOffset + dimension * 4)));
+            dimensionKeys.set(dimension, key);
+        }
+        return key;
+    }
+
+    @Nullable
+    private String string(int offset)
+    {
+        if (offset < 0)
+        {
+            return null;
+        }
+        final int length = buffer.getInt(poolOffset + offset);
+        final byte[] bytes = new byte[length];
+        buffer.get(poolOffset + offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(int offset, byte[] bytes)
+    {
+        if (buffer.getInt(poolOffset + offset) != bytes.length)
+        {
+            return false;
+        }
+        final int start = poolOffset + offset + 4;
+        for (int i = 0; i < bytes.length; i++)
+        {
+            if (buffer.get(start + i) != bytes[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String[] stringList(int list)
+    {
+        final int start = extrasOffset + buffer.getInt(listsOffset + list * 4);
+        final String[] strings = new String[buffer.getInt(start)];
+        for (int i = 0; i < strings.length; i++)
+        {
+            strings[i] = string(buffer.getInt(start + 4 + i * 4));
+        }
+        return strings;
+    }
+
+    /**
+     * Lays out a snapshot in memory.
+     */
+    private static final class Writer
+    {
+        private final Collection<Waypoint> waypoints;
+        private final Map<WaypointGroup, Integer> groupIndexes = new IdentityHashMap<>();
+        private final Map<String, Integer> groupsByGuid = new HashMap<>();
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<String, Integer> dimensions = new HashMap<>();
+        private final Map<List<String>, Integer> lists = new HashMap<>();
+        private ByteBuffer dimensionTable = ByteBuffer.allocate(64);
+        private ByteBuffer listTable = ByteBuffer.allocate(64);
+        private ByteBuffer groups = ByteBuffer.allocate(GROUP_SIZE * 16);
+        private ByteBuffer extras = ByteBuffer.allocate(256);
+        private ByteBuffer pool = ByteBuffer.allocate(1024);
+
+        Writer(Collection<Waypoint> waypoints)
+        {
+            this.waypoints = waypoints;
+        }
+
+        void writeTo(OutputStream out) throws IOException
+        {
+            final ByteBuffer records = ByteBuffer.allocate(waypoints.size() * RECORD_SIZE);
+            for (final Waypoint waypoint : waypoints)
+            {
+                final int group = waypoint.getGroup() == null ? -1 : groupIndex(waypoint.getGroup());
+                final BlockPos pos = waypoint.getPosition();
+                records.putInt(string(waypoint.getModId()));
+                records.putInt(string(waypoint.getId()));
+                records.putInt(string(waypoint.name));
+                records.putInt(dimension(waypoint.getDimension()));
+                records.putInt(pos.getX());
+                records.putInt(pos.getY());
+                records.putInt(pos.getZ());
+                records.putInt(group);
+                putBase(records, waypoint, (waypoint.isPersistent() ? PERSISTENT : 0)
+                        | (waypoint.isEditable() ? EDITABLE : 0)
+                        | (waypoint.isEnabled() ? ENABLED : 0));
+            }
+
+            final int dimensionsOffset = HEADER_SIZE + groups.position();
+            final int listsOffset = dimensionsOffset + dimensionTable.position();
+            final int recordsOffset = listsOffset + listTable.position();
+            final int extrasOffset = recordsOffset + records.position();
+            final int poolOffset = extrasOffset + extras.position();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putDouble(Waypoint.VERSION);
+            header.putInt(waypoints.size());
+            header.putInt(groupsByGuid.size());
+            header.putInt(dimensions.size());
+            header.putInt(lists.size());
+            header.putInt(HEADER_SIZE);
+            header.putInt(dimensionsOffset);
+            header.putInt(listsOffset);
+            header.putInt(recordsOffset);
+            header.putInt(extrasOffset);
+            header.putInt(poolOffset);
+            header.putInt(pool.position());
+
+            out.write(header.array());
+            out.write(groups.array(), 0, groups.position());
+            out.write(dimensionTable.array(), 0, dimensionTable.position());
+            out.write(listTable.array(), 0, listTable.position());
+            out.write(records.array(), 0, records.position());
+            out.write(extras.array(), 0, extras.position());
+            out.write(pool.array(), 0, pool.position());
+        }
+
+        private int groupIndex(WaypointGroup group)
+        {
+            final Integer existing = groupIndexes.get(group);
+            if (existing != null)
+            {
+                return existing;
+            }
+            // Different instances of the same group are stored once
+            Integer index = groupsByGuid.get(group.getGuid());
+            if (index == null)
+            {
+                index = groupsByGuid.size();
+                groupsByGuid.put(group.getGuid(), index);
+                groups = ensure(groups, GROUP_SIZE);
+                groups.putInt(string(group.getModId()));
+                groups.putInt(string(group.getId()));
+                groups.putInt(string(group.name));
+                groups.putInt(group.getDisplayOrder());
+                putBase(groups, group, 0);
+            }
+            groupIndexes.put(group, index);
+            return index;
+        }
+
+        /**
+         * Puts color, bgColor, displayDims, icon and flags, in that order.
+         */
+        private void putBase(ByteBuffer target, WaypointBase<?> base, int flags)
+        {
+            target.putInt(base.color == null ? 0 : base.color);
+            target.putInt(base.bgColor == null ? 0 : base.bgColor);
+            target.putInt(base.displayDims == null ? -1 : stringList(base.displayDims));
+            target.putInt(base.icon == null ? -1 : icon(base.icon));
+            target.putInt(flags | (base.color != null ? HAS_COLOR : 0) | (base.bgColor != null ? HAS_BG_COLOR : 0));
+        }
+
+        private int icon(MapImage icon)
+        {
+            final ResourceLocation imageLocation = icon.getImageLocation();
+            final int location = imageLocation == null ? -1 : string(imageLocation.toString());
+            final Double anchorX = icon.getRawAnchorX();
+            final Double anchorY = icon.getRawAnchorY();
+            extras = ensure(extras, ICON_SIZE);
+            final int offset = extras.position();
+            extras.putInt(location);
+            extras.putInt(icon.getColor());
+            extras.putFloat(icon.getOpacity());
+            extras.putInt(icon.getTextureX());
+            extras.putInt(icon.getTextureY());
+            extras.putInt(icon.getTextureWidth());
+            extras.putInt(icon.getTextureHeight());
+            extras.putInt(icon.getRotation());
+            extras.putDouble(icon.getDisplayWidth());
+            extras.putDouble(icon.getDisplayHeight());
+            extras.putInt((anchorX != null ? HAS_ANCHOR_X : 0) | (anchorY != null ? HAS_ANCHOR_Y : 0));
+            extras.putDouble(anchorX == null ? 0 : anchorX);
+            extras.putDouble(anchorY == null ? 0 : anchorY);
+            return offset;
+        }
+
+        private int dimension(String name)
+        {
+            Integer index = dimensions.get(name);
+            if (index == null)
+            {
+                index = dimensions.size();
+                dimensions.put(name, index);
+                dimensionTable = ensure(dimensionTable, 4);
+                dimensionTable.putInt(string(name));
+            }
+            return index;
+        }
+
+        private int stringList(String[] values)
+        {
+            // Most waypoints share a few lists, so each distinct list is stored once
+            final List<String> key = Arrays.asList(values.clone());
+            final Integer existing = lists.get(key);
+            if (existing != null)
+            {
+                return existing;
+            }
+
+            final int[] refs = new int[values.length];
+            for (int i = 0; i < values.length; i++)
+            {
+                refs[i] = string(values[i]);
+            }
+            extras = ensure(extras, 4 + refs.length * 4);
+            final int offset = extras.position();
+            extras.putInt(refs.length);
+            for (final int ref : refs)
+            {
+                extras.putInt(ref);
+            }
+
+            final int index = lists.size();
+            lists.put(key, index);
+            listTable = ensure(listTable, 4);
+            listTable.putInt(offset);
+            return index;
+        }
+
+        private int string(@Nullable String value)
+        {
+            if (value == null)
+            {
+                return -1;
+            }
+            final Integer existing = strings.get(value);
+            if (existing != null)
+            {
+                return existing;
+            }
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            pool = ensure(pool, 4 + bytes.length);
+            final int offset = pool.position();
+            pool.putInt(bytes.length);
+            pool.put(bytes);
+            strings.put(value, offset);
+            return offset;
+        }
+
+        private static ByteBuffer ensure(ByteBuffer buffer, int bytes)
+        {
+            if (buffer.remaining() >= bytes)
+            {
+                return buffer;
+            }
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            larger.put(buffer.array(), 0, buffer.position());
+            return larger;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.model;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * The style a waypoint or group is actually displayed with, once its delegates have been consulted: its own color,
+ * background color, icon and display dimensions where set, else those of its group, and so on.
+ * <p>
+ * Styles are immutable, and are cached by {@link WaypointBase#getEffectiveStyle()} until
+ * {@link WaypointBase#getRevision()} changes anywhere along the delegate chain.  Changing a {@link MapImage} in place
+ * isn't detected, so set the icon again after modifying it.
+ */
+public final class WaypointStyle
+{
+    private final Integer color;
+    private final Integer backgroundColor;
+    private final MapImage icon;
+    private final String[] displayDims;
+    private final long[] displayBits;
+    final long revision;
+
+    WaypointStyle(@Nullable Integer color, @Nullable Integer backgroundColor, @Nullable MapImage icon,
+                  @Nullable String[] displayDims, long revision)
+    {
+        this.color = color;
+        this.backgroundColor = backgroundColor;
+        this.icon = icon;
+        this.displayDims = displayDims;
+        this.displayBits = DimensionKey.toBits(displayDims);
+        this.revision = revision;
+    }
+
+    private WaypointStyle(WaypointStyle style, long revision)
+    {
+        this.color = style.color;
+        this.backgroundColor = style.backgroundColor;
+        this.icon = style.icon;
+        this.displayDims = style.displayDims;
+        this.displayBits = style.displayBits;
+        this.revision = revision;
+    }
+
+    /**
+     * A copy with a new revision, if the values are the same as this one's.
+     */
+    WaypointStyle revise(@Nullable Integer color, @Nullable Integer backgroundColor, @Nullable MapImage icon,
+                         @Nullable String[] displayDims, long revision)
+    {
+        if (icon != this.icon || displayDims != this.displayDims
+                || !Objects.equal(color, this.color) || !Objects.equal(backgroundColor, this.backgroundColor))
+        {
+            return new WaypointStyle(color, backgroundColor, icon, displayDims, revision);
+        }
+        return revision == this.revision ? this : new WaypointStyle(this, revision);
+    }
+
+    /**
+     * Color for the label.
+     *
+     * @return rgb int, or null
+     */
+    @Nullable
+    public Integer getColor()
+    {
+        return color;
+    }
+
+    /**
+     * Background color for the label.
+     *
+     * @return rgb int, or null
+     */
+    @Nullable
+    public Integer getBackgroundColor()
+    {
+        return backgroundColor;
+    }
+
+    /**
+     * Icon specification.
+     *
+     * @return the icon, or null
+     */
+    @Nullable
+    public MapImage getIcon()
+    {
+        return icon;
+    }
+
+    /**
+     * Dimensions where the waypoint is displayed.  The array is shared and must not be modified.
+     *
+     * @return the dimension names, or null
+     */
+    @Nullable
+    public String[] getDisplayDimensions()
+    {
+        return displayDims;
+    }
+
+    /**
+     * The display dimensions as a bitset of {@link DimensionKey#ordinal()}s.  The array is shared and must not be
+     * modified.
+     *
+     * @return the bits
+     */
+    public long[] getDisplayDimensionBits()
+    {
+        return displayBits;
+    }
+
+    /**
+     * Whether displayed in the dimension.
+     *
+     * @param dimension the dimension
+     * @return true if displayed
+     */
+    public boolean isDisplayed(DimensionKey dimension)
+    {
+        return dimension.isIn(displayBits);
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("color", color)
+                .add("backgroundColor", backgroundColor)
+                .add("icon", icon)
+                .add("displayDims", displayDims == null ? null : Arrays.asList(displayDims))
+                .toString();
+    }
+}
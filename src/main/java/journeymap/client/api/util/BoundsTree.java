@@ -0,0 +1,158 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import net.minecraft.world.phys.AABB;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A static R-tree of XZ bounding boxes, bulk-loaded with Sort-Tile-Recursive packing.  Used to find which
+ * boxes contain a point in roughly O(log n) rather than checking them all.
+ */
+final class BoundsTree
+{
+    private static final int NODE_SIZE = 16;
+
+    // Original index of each entry in the bottom level
+    private final int[] ids;
+
+    // Boxes per level as minX, minZ, maxX, maxZ; level 0 holds the entries, the last level holds the root
+    private final List<double[]> levels = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param bounds the boxes to index. Y is ignored.
+     */
+    BoundsTree(List<AABB> bounds)
+    {
+        final int count = bounds.size();
+        this.ids = new int[count];
+        if (count == 0)
+        {
+            return;
+        }
+
+        // Sort by x center, then sort each vertical slice by z center
+        final long[] order = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            final AABB box = bounds.get(i);
+            order[i] = sortKey((box.minX + box.maxX) / 2, i);
+        }
+        Arrays.sort(order);
+        final int leaves = (count + NODE_SIZE - 1) / NODE_SIZE;
+        final int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_SIZE;
+        for (int start = 0; start < count; start += sliceSize)
+        {
+            final int end = Math.min(count, start + sliceSize);
+            for (int i = start; i < end; i++)
+            {
+                final AABB box = bounds.get((int) order[i]);
+                order[i] = sortKey((box.minZ + box.maxZ) / 2, (int) order[i]);
+            }
+            Arrays.sort(order, start, end);
+        }
+
+        double[] level = new double[count * 4];
+        for (int i = 0; i < count; i++)
+        {
+            final AABB box = bounds.get((int) order[i]);
+            ids[i] = (int) order[i];
+            level[i * 4] = box.minX;
+            level[i * 4 + 1] = box.minZ;
+            level[i * 4 + 2] = box.maxX;
+            level[i * 4 + 3] = box.maxZ;
+        }
+        levels.add(level);
+
+        // Each parent covers NODE_SIZE consecutive children
+        while (level.length > 4)
+        {
+            final int children = level.length / 4;
+            final double[] parents = new double[((children + NODE_SIZE - 1) / NODE_SIZE) * 4];
+            for (int child = 0; child < children; child++)
+            {
+                final int parent = (child / NODE_SIZE) * 4;
+                if (child % NODE_SIZE == 0)
+                {
+                    System.arraycopy(level, child * 4, parents, parent, 4);
+                }
+                else
+                {
+                    parents[parent] = Math.min(parents[parent], level[child * 4]);
+                    parents[parent + 1] = Math.min(parents[parent + 1], level[child * 4 + 1]);
+                    parents[parent + 2] = Math.max(parents[parent + 2], level[child * 4 + 2]);
+                    parents[parent + 3] = Math.max(parents[parent + 3], level[child * 4 + 3]);
+                }
+            }
+            levels.add(parents);
+            level = parents;
+        }
+    }
+
+    /**
+     * Visits the original index of every box which contains the point, inclusive of edges.
+     *
+     * @param x        x coord
+     * @param z        z coord
+     * @param consumer receives each index
+     */
+    void query(double x, double z, IntConsumer consumer)
+    {
+        if (!levels.isEmpty())
+        {
+            visit(levels.size() - 1, 0, x, z, consumer);
+        }
+    }
+
+    private void visit(int depth, int node, double x, double z, IntConsumer consumer)
+    {
+        final double[] level = levels.get(depth);
+        if (x < level[node * 4] || z < level[node * 4 + 1] || x > level[node * 4 + 2] || z > level[node * 4 + 3])
+        {
+            return;
+        }
+        if (depth == 0)
+        {
+            consumer.accept(ids[node]);
+            return;
+        }
+        final int children = levels.get(depth - 1).length / 4;
+        final int end = Math.min(children, (node + 1) * NODE_SIZE);
+        for (int child = node * NODE_SIZE; child < end; child++)
+        {
+            visit(depth - 1, child, x, z, consumer);
+        }
+    }
+
+    /**
+     * Packs a coordinate and an index into a long which sorts by the coordinate.
+     */
+    private static long sortKey(double coord, int index)
+    {
+        return ((long) Math.floor(coord) << 32) | index;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.level.ChunkPos;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Traces the outlines of a set of chunks directly on the chunk grid, without going through {@link java.awt.geom.Area}.
+ * <p>
+ * Every chunk side which doesn't border another chunk is a boundary edge.  Edges are walked with the chunks on
+ * the left, so hulls come out counter-clockwise and holes clockwise (with +X right and +Z down), matching
+ * {@link PolygonHelper#classifyAndGroup}.  Where two chunks only touch at a corner, the walk turns left, so they
+ * get separate outlines rather than a self-touching one.  Each 4-connected group of chunks produces one hull and
+ * its holes, and only corner points are emitted.
+ */
+final class ChunkContourTracer
+{
+    // Directions of travel, in counter-clockwise order so that left = +1 and right = +3
+    private static final int EAST = 0;
+    private static final int NORTH = 1;
+    private static final int WEST = 2;
+    private static final int SOUTH = 3;
+
+    private final long[] keys;
+    private final int[] neighbors;
+
+    // Corners of the outline being traced, in chunk coords
+    private int[] cornerX = new int[16];
+    private int[] cornerZ = new int[16];
+    private int corners;
+
+    /**
+     * Constructor.
+     *
+     * @param chunkKeys chunk keys as per {@link ChunkPos#toLong()}. Duplicates are ignored.
+     */
+    ChunkContourTracer(long[] chunkKeys)
+    {
+        final long[] sorted = new long[chunkKeys.length];
+        for (int i = 0; i < chunkKeys.length; i++)
+        {
+            sorted[i] = rowKey(ChunkPos.getX(chunkKeys[i]), ChunkPos.getZ(chunkKeys[i]));
+        }
+        Arrays.sort(sorted);
+
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            if (count == 0 || sorted[i] != sorted[count - 1])
+            {
+                sorted[count++] = sorted[i];
+            }
+        }
+        this.keys = Arrays.copyOf(sorted, count);
+
+        this.neighbors = new int[count * 4];
+        for (int i = 0; i < count; i++)
+        {
+            final int x = x(keys[i]);
+            final int z = z(keys[i]);
+            neighbors[i * 4 + EAST] = (i + 1 < count && keys[i + 1] == rowKey(x + 1, z)) ? i + 1 : -1;
+            neighbors[i * 4 + WEST] = (i > 0 && keys[i - 1] == rowKey(x - 1, z)) ? i - 1 : -1;
+            neighbors[i * 4 + NORTH] = indexOf(x, z - 1);
+            neighbors[i * 4 + SOUTH] = indexOf(x, z + 1);
+        }
+    }
+
+    /**
+     * Traces the chunks into polygons.
+     *
+     * @param y the y-coordinate for the resulting polygons
+     * @return one polygon with holes per 4-connected group of chunks
+     */
+    @Nonnull
+    List<MapPolygonWithHoles> trace(final int y)
+    {
+        final int count = keys.length;
+        final int[] component = components();
+        final int[] resultIndex = new int[count];
+        Arrays.fill(resultIndex, -1);
+
+        final List<MapPolygon> hulls = new ArrayList<>();
+        final List<List<MapPolygon>> holes = new ArrayList<>();
+        final boolean[] visited = new boolean[count * 4];
+
+        for (int cell = 0; cell < count; cell++)
+        {
+            for (int dir = 0; dir < 4; dir++)
+            {
+                if (visited[cell * 4 + dir] || neighbors[cell * 4 + right(dir)] != -1)
+                {
+                    continue;
+                }
+
+                traceLoop(cell, dir, visited);
+                final boolean hole = signedArea(cornerX, cornerZ, corners) < 0;
+                final MapPolygon polygon = toPolygon(cornerX, cornerZ, corners, y);
+
+                final int root = component[cell];
+                if (resultIndex[root] == -1)
+                {
+                    resultIndex[root] = hulls.size();
+                    hulls.add(null);
+                    holes.add(new ArrayList<>());
+                }
+                if (hole)
+                {
+                    holes.get(resultIndex[root]).add(polygon);
+                }
+                else
+                {
+                    hulls.set(resultIndex[root], polygon);
+                }
+            }
+        }
+
+        final List<MapPolygonWithHoles> result = new ArrayList<>(hulls.size());
+        for (int i = 0; i < hulls.size(); i++)
+        {
+            result.add(new MapPolygonWithHoles(hulls.get(i), holes.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Walks one closed outline, starting with the boundary edge to the right of the cell when travelling
+     * in direction dir, and collects its corners.
+     */
+    private void traceLoop(final int startCell, final int startDir, final boolean[] visited)
+    {
+        corners = 0;
+        int cell = startCell;
+        int dir = startDir;
+        do
+        {
+            visited[cell * 4 + dir] = true;
+
+            // Pick the next edge by looking at the two cells beyond the end of this one
+            int nextCell = cell;
+            int nextDir = left(dir);
+            final int aheadLeft = neighbors[cell * 4 + dir];
+            if (aheadLeft != -1)
+            {
+                final int aheadRight = neighbors[aheadLeft * 4 + right(dir)];
+                if (aheadRight == -1)
+                {
+                    nextCell = aheadLeft;
+                    nextDir = dir;
+                }
+                else
+                {
+                    nextCell = aheadRight;
+                    nextDir = right(dir);
+                }
+            }
+
+            if (nextDir != dir)
+            {
+                addCorner(endX(cell, dir), endZ(cell, dir));
+            }
+
+            cell = nextCell;
+            dir = nextDir;
+        }
+        while (cell != startCell || dir != startDir);
+    }
+
+    private void addCorner(int x, int z)
+    {
+        if (corners == cornerX.length)
+        {
+            cornerX = Arrays.copyOf(cornerX, corners * 2);
+            cornerZ = Arrays.copyOf(cornerZ, corners * 2);
+        }
+        cornerX[corners] = x;
+        cornerZ[corners] = z;
+        corners++;
+    }
+
+    /**
+     * Shoelace sum of traced corners, as in {@link PolygonHelper#classifyAndGroup}.  Negative for holes.
+     */
+    static long signedArea(int[] cornerX, int[] cornerZ, int corners)
+    {
+        long sum = 0;
+        int a = corners - 1;
+        for (int b = 0; b < corners; b++)
+        {
+            sum += (long) (cornerX[b] - cornerX[a]) * (cornerZ[b] + cornerZ[a]);
+            a = b;
+        }
+        return sum;
+    }
+
+    /**
+     * Converts traced corners to block coords, starting with the lower-left (southwest) corner.
+     */
+    static MapPolygon toPolygon(int[] cornerX, int[] cornerZ, int corners, int y)
+    {
+        int first = 0;
+        for (int i = 1; i < corners; i++)
+        {
+            if (cornerZ[i] > cornerZ[first] || (cornerZ[i] == cornerZ[first] && cornerX[i] < cornerX[first]))
+            {
+                first = i;
+            }
+        }
+
+        final int[] xs = new int[corners];
+        final int[] zs = new int[corners];
+        for (int i = 0; i < corners; i++)
+        {
+            final int index = (first + i) % corners;
+            xs[i] = cornerX[index] << 4;
+            zs[i] = cornerZ[index] << 4;
+        }
+        return new MapPolygon(xs, zs, y);
+    }
+
+    /**
+     * Labels each cell with the lowest index of the 4-connected group it belongs to.
+     */
+    private int[] components()
+    {
+        final int count = keys.length;
+        final int[] parent = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            parent[i] = i;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            union(parent, i, neighbors[i * 4 + EAST]);
+            union(parent, i, neighbors[i * 4 + SOUTH]);
+        }
+        for (int i = 0; i < count; i++)
+        {
+            parent[i] = find(parent, i);
+        }
+        return parent;
+    }
+
+    private static void union(int[] parent, int a, int b)
+    {
+        if (b != -1)
+        {
+            final int rootA = find(parent, a);
+            final int rootB = find(parent, b);
+            if (rootA < rootB)
+            {
+                parent[rootB] = rootA;
+            }
+            else if (rootB < rootA)
+            {
+                parent[rootA] = rootB;
+            }
+        }
+    }
+
+    private static int find(int[] parent, int i)
+    {
+        while (parent[i] != i)
+        {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private int indexOf(int x, int z)
+    {
+        final int index = Arrays.binarySearch(keys, rowKey(x, z));
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * End of the edge, in chunk coords.  A cell at (x, z) spans x..x+1 and z..z+1.
+     */
+    private int endX(int cell, int dir)
+    {
+        return x(keys[cell]) + ((dir == EAST || dir == NORTH) ? 1 : 0);
+    }
+
+    private int endZ(int cell, int dir)
+    {
+        return z(keys[cell]) + ((dir == EAST || dir == SOUTH) ? 1 : 0);
+    }
+
+    private static int left(int dir)
+    {
+        return (dir + 1) & 3;
+    }
+
+    private static int right(int dir)
+    {
+        return (dir + 3) & 3;
+    }
+
+    /**
+     * Packs chunk coords so that sorting orders by row (z), then x.
+     */
+    private static long rowKey(int x, int z)
+    {
+        return ((long) z << 32) | ((x ^ 0x80000000) & 0xFFFFFFFFL);
+    }
+
+    private static int x(long rowKey)
+    {
+        return ((int) rowKey) ^ 0x80000000;
+    }
+
+    private static int z(long rowKey)
+    {
+        return (int) (rowKey >> 32);
+    }
+}
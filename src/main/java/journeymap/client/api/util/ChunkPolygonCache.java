@@ -0,0 +1,606 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+
+package journeymap.client.api.util;
+
+import com.google.common.base.MoreObjects;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.level.ChunkPos;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches the polygons for a changing set of chunks, such as a claim which grows or shrinks one chunk at a time.
+ * <p>
+ * Chunks are grouped the same way as {@link PolygonHelper#createChunksPolygon(Collection, int)}: one
+ * {@link MapPolygonWithHoles} per 4-connected group, traced the same way as {@link ChunkContourTracer}.  Each
+ * boundary edge remembers the outline loop it belongs to.  Adding or removing a chunk only retraces the loops which
+ * pass along the sides of that chunk and its neighbours, so a change costs time in proportion to the length of those
+ * loops, not to the number of chunks.  Holes and groups which the change doesn't reach keep their cached loops.
+ * The returned {@link Delta} says which polygons to take off the map and which to put on it.  Polygons which aren't
+ * in a Delta are unchanged, and can be matched by identity.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class ChunkPolygonCache
+{
+    // Directions of travel, as in ChunkContourTracer: east, north, west, south
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DZ = {0, -1, 0, 1};
+
+    private final int y;
+    // Chunk keys and edge keys are stored spread(), since Long.hashCode() folds x into z and a diagonal line of
+    // chunks would all hash alike
+    private final Set<Long> chunks = new HashSet<>();
+
+    // Boundary edges, by edgeKey(), and the loop each one belongs to
+    private final Map<Long, Loop> edges = new HashMap<>();
+    private final Set<Outline> outlines = new LinkedHashSet<>();
+
+    // Corners and edges of the loop being traced
+    private int[] cornerX = new int[16];
+    private int[] cornerZ = new int[16];
+    private int corners;
+    private long[] loopEdges = new long[16];
+    private int loopEdgeCount;
+
+    /**
+     * Constructor.
+     *
+     * @param y The y-coordinate for the resulting polygons.
+     */
+    public ChunkPolygonCache(final int y)
+    {
+        this.y = y;
+    }
+
+    /**
+     * Adds a chunk.
+     *
+     * @param chunkPos the chunk
+     * @return the polygons changed as a result
+     */
+    @Nonnull
+    public Delta add(@Nonnull final ChunkPos chunkPos)
+    {
+        final long key = chunkPos.toLong();
+        return chunks.add(spread(key)) ? update(new long[]{key}, 1) : Delta.EMPTY;
+    }
+
+    /**
+     * Removes a chunk.
+     *
+     * @param chunkPos the chunk
+     * @return the polygons changed as a result
+     */
+    @Nonnull
+    public Delta remove(@Nonnull final ChunkPos chunkPos)
+    {
+        final long key = chunkPos.toLong();
+        return chunks.remove(spread(key)) ? update(new long[]{key}, 1) : Delta.EMPTY;
+    }
+
+    /**
+     * Adds several chunks.  All of them are added before any loops are retraced, so each loop they touch is
+     * traced once however many of the chunks it passes.
+     *
+     * @param chunks the chunks
+     * @return the polygons changed as a result
+     */
+    @Nonnull
+    public Delta addAll(@Nonnull final Collection<ChunkPos> chunks)
+    {
+        final long[] added = new long[chunks.size()];
+        int count = 0;
+        for (final ChunkPos chunkPos : chunks)
+        {
+            final long key = chunkPos.toLong();
+            if (this.chunks.add(spread(key)))
+            {
+                added[count++] = key;
+            }
+        }
+        return count == 0 ? Delta.EMPTY : update(added, count);
+    }
+
+    /**
+     * Whether the chunk has been added.
+     *
+     * @param chunkPos the chunk
+     * @return true if present
+     */
+    public boolean contains(@Nonnull final ChunkPos chunkPos)
+    {
+        return chunks.contains(spread(chunkPos.toLong()));
+    }
+
+    /**
+     * Number of chunks.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return chunks.size();
+    }
+
+    /**
+     * Gets the current polygons, one per 4-connected group of chunks.
+     *
+     * @return the polygons
+     */
+    @Nonnull
+    public List<MapPolygonWithHoles> getPolygons()
+    {
+        final List<MapPolygonWithHoles> result = new ArrayList<>(outlines.size());
+        for (final Outline outline : outlines)
+        {
+            result.add(outline.polygon);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all chunks.
+     */
+    public void clear()
+    {
+        chunks.clear();
+        edges.clear();
+        outlines.clear();
+    }
+
+    /**
+     * Retraces the loops around chunks which have just been added or removed, and regroups them into outlines.
+     */
+    private Delta update(final long[] changed, final int count)
+    {
+        // Any loop along a side of a changed chunk or of its neighbours may have changed
+        final Set<Loop> stale = new LinkedHashSet<>();
+        final ArrayDeque<Long> seeds = new ArrayDeque<>();
+        for (int i = 0; i < count; i++)
+        {
+            final int x = ChunkPos.getX(changed[i]);
+            final int z = ChunkPos.getZ(changed[i]);
+            collectEdges(x, z, stale, seeds);
+            for (int dir = 0; dir < 4; dir++)
+            {
+                collectEdges(x + DX[dir], z + DZ[dir], stale, seeds);
+            }
+        }
+        for (final Loop loop : stale)
+        {
+            release(loop, seeds);
+        }
+
+        final List<Loop> traced = new ArrayList<>();
+        while (!seeds.isEmpty())
+        {
+            final long seed = seeds.poll();
+            final Loop owner = edges.get(spread(seed));
+            if ((owner == null || stale.contains(owner)) && isBoundary(seed))
+            {
+                traced.add(trace(seed, stale, seeds));
+            }
+        }
+
+        // Regroup the loops of every outline which lost one
+        final Set<Outline> touched = new LinkedHashSet<>();
+        for (final Loop loop : stale)
+        {
+            if (loop.outline != null)
+            {
+                touched.add(loop.outline);
+            }
+        }
+        final List<Loop> hulls = new ArrayList<>();
+        final List<Loop> holes = new ArrayList<>();
+        final List<MapPolygonWithHoles> removed = new ArrayList<>(touched.size());
+        for (final Outline outline : touched)
+        {
+            if (!stale.contains(outline.hull))
+            {
+                hulls.add(outline.hull);
+            }
+            for (final Loop hole : outline.holes)
+            {
+                if (!stale.contains(hole))
+                {
+                    holes.add(hole);
+                }
+            }
+            removed.add(outline.polygon);
+            outlines.remove(outline);
+        }
+        for (final Loop loop : traced)
+        {
+            (loop.hole ? holes : hulls).add(loop);
+        }
+
+        final List<Outline> regrouped = new ArrayList<>(hulls.size());
+        for (final Loop hull : hulls)
+        {
+            final Outline outline = new Outline(hull);
+            hull.outline = outline;
+            regrouped.add(outline);
+        }
+        final boolean single = regrouped.size() == 1;
+        for (final Loop hole : holes)
+        {
+            Outline outline = single ? regrouped.get(0) : innermost(regrouped, hole);
+            if (outline == null)
+            {
+                // A chunk inside a group was removed without reaching its boundary, so reopen that group
+                final Outline enclosing = innermost(outlines, hole);
+                if (enclosing == null)
+                {
+                    throw new IllegalStateException("No hull around hole " + hole.polygon);
+                }
+                outlines.remove(enclosing);
+                removed.add(enclosing.polygon);
+                outline = new Outline(enclosing.hull);
+                enclosing.hull.outline = outline;
+                for (final Loop kept : enclosing.holes)
+                {
+                    outline.holes.add(kept);
+                    kept.outline = outline;
+                }
+                regrouped.add(outline);
+            }
+            outline.holes.add(hole);
+            hole.outline = outline;
+        }
+
+        final List<MapPolygonWithHoles> added = new ArrayList<>(regrouped.size());
+        for (final Outline outline : regrouped)
+        {
+            final List<MapPolygon> holePolygons = new ArrayList<>(outline.holes.size());
+            for (final Loop hole : outline.holes)
+            {
+                holePolygons.add(hole.polygon);
+            }
+            outline.polygon = new MapPolygonWithHoles(outline.hull.polygon, holePolygons);
+            outlines.add(outline);
+            added.add(outline.polygon);
+        }
+        return new Delta(removed, added);
+    }
+
+    /**
+     * Marks the loops on the sides of a chunk as stale, and queues its boundary edges for tracing.
+     */
+    private void collectEdges(final int x, final int z, final Set<Loop> stale, final ArrayDeque<Long> seeds)
+    {
+        for (int dir = 0; dir < 4; dir++)
+        {
+            final long edge = edgeKey(x, z, dir);
+            final Loop loop = edges.get(spread(edge));
+            if (loop != null)
+            {
+                stale.add(loop);
+            }
+            seeds.add(edge);
+        }
+    }
+
+    /**
+     * Forgets a stale loop's edges, and queues them for tracing in case they are still on the boundary.
+     */
+    private void release(final Loop loop, final ArrayDeque<Long> seeds)
+    {
+        for (final long edge : loop.edges)
+        {
+            if (edges.get(spread(edge)) == loop)
+            {
+                edges.remove(spread(edge));
+                seeds.add(edge);
+            }
+        }
+    }
+
+    /**
+     * Walks one closed loop from a boundary edge, with the same turns as {@link ChunkContourTracer}, and claims its
+     * edges.  Should it run into a loop which wasn't thought stale, that loop is released and retraced too.
+     */
+    private Loop trace(final long start, final Set<Loop> stale, final ArrayDeque<Long> seeds)
+    {
+        final Loop loop = new Loop();
+        corners = 0;
+        loopEdgeCount = 0;
+        int x = edgeX(start);
+        int z = edgeZ(start);
+        int dir = edgeDir(start);
+        long edge = start;
+        do
+        {
+            final Loop previous = edges.put(spread(edge), loop);
+            if (previous != null && previous != loop && stale.add(previous))
+            {
+                release(previous, seeds);
+                edges.put(spread(edge), loop);
+            }
+            addEdge(edge);
+
+            // Pick the next edge by looking at the two chunks beyond the end of this one
+            int nextX = x;
+            int nextZ = z;
+            int nextDir = left(dir);
+            final int aheadX = x + DX[dir];
+            final int aheadZ = z + DZ[dir];
+            if (isChunk(aheadX, aheadZ))
+            {
+                final int right = right(dir);
+                if (isChunk(aheadX + DX[right], aheadZ + DZ[right]))
+                {
+                    nextX = aheadX + DX[right];
+                    nextZ = aheadZ + DZ[right];
+                    nextDir = right;
+                }
+                else
+                {
+                    nextX = aheadX;
+                    nextZ = aheadZ;
+                    nextDir = dir;
+                }
+            }
+
+            if (nextDir != dir)
+            {
+                // End of the edge, in chunk coords.  A chunk at (x, z) spans x..x+1 and z..z+1.
+                addCorner(x + ((dir == 0 || dir == 1) ? 1 : 0), z + ((dir == 0 || dir == 3) ? 1 : 0));
+            }
+
+            x = nextX;
+            z = nextZ;
+            dir = nextDir;
+            edge = edgeKey(x, z, dir);
+        }
+        while (edge != start);
+
+        final long signedArea = ChunkContourTracer.signedArea(cornerX, cornerZ, corners);
+        loop.hole = signedArea < 0;
+        loop.area = Math.abs(signedArea);
+        loop.polygon = ChunkContourTracer.toPolygon(cornerX, cornerZ, corners, y);
+        loop.edges = Arrays.copyOf(loopEdges, loopEdgeCount);
+        return loop;
+    }
+
+    private void addCorner(final int x, final int z)
+    {
+        if (corners == cornerX.length)
+        {
+            cornerX = Arrays.copyOf(cornerX, corners * 2);
+            cornerZ = Arrays.copyOf(cornerZ, corners * 2);
+        }
+        cornerX[corners] = x;
+        cornerZ[corners] = z;
+        corners++;
+    }
+
+    private void addEdge(final long edge)
+    {
+        if (loopEdgeCount == loopEdges.length)
+        {
+            loopEdges = Arrays.copyOf(loopEdges, loopEdgeCount * 2);
+        }
+        loopEdges[loopEdgeCount++] = edge;
+    }
+
+    /**
+     * Whether the edge is on the boundary: its chunk is present and the chunk to the right of travel isn't.
+     */
+    private boolean isBoundary(final long edge)
+    {
+        final int x = edgeX(edge);
+        final int z = edgeZ(edge);
+        final int right = right(edgeDir(edge));
+        return isChunk(x, z) && !isChunk(x + DX[right], z + DZ[right]);
+    }
+
+    /**
+     * Finds the outline a hole belongs to: the smallest hull around a chunk on the hole's edge, or null if there is
+     * none.  Hulls can nest, as when a group sits in another's hole, but a chunk's own hull is the smallest around it.
+     */
+    private static Outline innermost(final Collection<Outline> candidates, final Loop hole)
+    {
+        // Centre of a chunk on the hole's edge, in block coords, so the ray never meets a corner
+        final double px = (edgeX(hole.edges[0]) << 4) + 8;
+        final double pz = (edgeZ(hole.edges[0]) << 4) + 8;
+        Outline best = null;
+        for (final Outline outline : candidates)
+        {
+            if ((best == null || outline.hull.area < best.hull.area) && contains(outline.hull.polygon, px, pz))
+            {
+                best = outline;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Even-odd test of a point against a polygon.
+     */
+    private static boolean contains(final MapPolygon polygon, final double px, final double pz)
+    {
+        boolean inside = false;
+        final int size = polygon.size();
+        for (int i = 0, j = size - 1; i < size; j = i++)
+        {
+            final int zi = polygon.getZ(i);
+            final int zj = polygon.getZ(j);
+            if ((zi > pz) != (zj > pz))
+            {
+                final int xi = polygon.getX(i);
+                final int xj = polygon.getX(j);
+                if (px < xj + (double) (xi - xj) * (pz - zj) / (zi - zj))
+                {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    private boolean isChunk(final int x, final int z)
+    {
+        return chunks.contains(spread(ChunkPos.asLong(x, z)));
+    }
+
+    /**
+     * Mixes the bits of a key, one-to-one, so that its hash code depends on all of them.
+     */
+    private static long spread(final long key)
+    {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Packs an edge: the chunk on its left, and the direction of travel along it.
+     */
+    private static long edgeKey(final int x, final int z, final int dir)
+    {
+        return ((long) z << 34) | ((x & 0xFFFFFFFFL) << 2) | dir;
+    }
+
+    private static int edgeX(final long edge)
+    {
+        return (int) (edge >>> 2);
+    }
+
+    private static int edgeZ(final long edge)
+    {
+        return (int) (edge >> 34);
+    }
+
+    private static int edgeDir(final long edge)
+    {
+        return (int) (edge & 3);
+    }
+
+    private static int left(final int dir)
+    {
+        return (dir + 1) & 3;
+    }
+
+    private static int right(final int dir)
+    {
+        return (dir + 3) & 3;
+    }
+
+    /**
+     * One closed outline of boundary edges: a hull, or a hole when clockwise.
+     */
+    private static class Loop
+    {
+        long[] edges;
+        MapPolygon polygon;
+        boolean hole;
+        long area;
+        Outline outline;
+    }
+
+    /**
+     * A 4-connected group of chunks, as its hull, its holes and their polygon.
+     */
+    private static class Outline
+    {
+        final Loop hull;
+        final List<Loop> holes = new ArrayList<>();
+        MapPolygonWithHoles polygon;
+
+        Outline(final Loop hull)
+        {
+            this.hull = hull;
+        }
+    }
+
+    /**
+     * The polygons changed by an update.
+     */
+    public static class Delta
+    {
+        static final Delta EMPTY = new Delta(Collections.emptyList(), Collections.emptyList());
+
+        /**
+         * Polygons which no longer apply and should be taken off the map.
+         */
+        @Nonnull
+        public final List<MapPolygonWithHoles> removed;
+
+        /**
+         * New polygons which should be put on the map.
+         */
+        @Nonnull
+        public final List<MapPolygonWithHoles> added;
+
+        Delta(@Nonnull final List<MapPolygonWithHoles> removed, @Nonnull final List<MapPolygonWithHoles> added)
+        {
+            this.removed = removed;
+            this.added = added;
+        }
+
+        /**
+         * Whether nothing changed.
+         *
+         * @return true if empty
+         */
+        public boolean isEmpty()
+        {
+            return removed.isEmpty() && added.isEmpty();
+        }
+
+        /**
+         * Folds a later delta into this one.  Polygons added and then removed again cancel out.
+         */
+        void merge(final Delta later)
+        {
+            for (final MapPolygonWithHoles polygon : later.removed)
+            {
+                if (!added.remove(polygon))
+                {
+                    removed.add(polygon);
+                }
+            }
+            added.addAll(later.added);
+        }
+
+        @Override
+        public String toString()
+        {
+            return MoreObjects.toStringHelper(this)
+                    .add("removed", removed.size())
+                    .add("added", added.size())
+                    .toString();
+        }
+    }
+}
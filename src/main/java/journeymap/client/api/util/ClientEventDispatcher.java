@@ -0,0 +1,929 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.base.MoreObjects;
+import journeymap.client.api.IClientPlugin;
+import journeymap.client.api.display.Context;
+import journeymap.client.api.event.ClientEvent;
+import journeymap.client.api.event.DisplayUpdateEvent;
+import journeymap.client.api.event.EventCoalescing;
+import journeymap.client.api.event.EventDelivery;
+import journeymap.client.api.event.FullscreenMapEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers {@link ClientEvent}s to the {@link IClientPlugin}s subscribed to their {@link ClientEvent.Type}, as
+ * requested via {@link journeymap.client.api.IClientAPI#subscribe(String, EnumSet)}.
+ * <p>
+ * Each subscription is kept as a bitmask of type ordinals, and whenever plugins or subscriptions change, an array of
+ * subscribed plugins is rebuilt for every type.  Firing an event is then one array read and a loop over exactly the
+ * plugins which asked for it: no map lookups, iterators or type checks, and nothing allocated.
+ * <p>
+ * Dispatch guarantees:
+ * <ul>
+ * <li>An event is delivered once to each plugin subscribed to its type, in the order the plugins were registered,
+ * on the thread that fires it (unless coalesced or queued, as below).</li>
+ * <li>Every subscribed plugin receives the event even after one cancels it, and can check
+ * {@link ClientEvent#isCancelled()}.</li>
+ * <li>An exception thrown by a plugin is logged, and doesn't stop the others from receiving the event.</li>
+ * <li>Changes to plugins or subscriptions apply from the next event fired; a dispatch already in progress
+ * finishes with the plugins it started with.</li>
+ * </ul>
+ * Registration and subscription are thread-safe, and dispatch takes no locks.
+ * <p>
+ * A plugin which subscribes with {@link EventCoalescing} receives mouse-move and display update events through
+ * a slot per kind of event instead, after the plugins which don't coalesce.  An event may be held in its slot,
+ * replacing any older one, until {@link #endFrame()}, which the renderer calls once per frame.  Coalesced events
+ * must be fired and flushed on the same thread.
+ * <p>
+ * A plugin which opts into asynchronous {@link EventDelivery} receives non-cancellable events from a bounded queue
+ * on a worker thread, in the order they were fired, one at a time.  Changing its delivery keeps the same queue, so
+ * that still holds across the change.  Cancellable events are still delivered synchronously.  Queued events are delivered by a shared executor, which uses virtual threads when the runtime has
+ * them.
+ * Events which JourneyMap reuses (see {@link FullscreenMapEvent#isReusable()}) are queued as a
+ * {@link ClientEvent#snapshot()}.
+ * <p>
+ * Every event a plugin never receives because of coalescing or a full queue is counted by
+ * {@link #getDroppedCount(String)}.
+ * <p>
+ * Each call to a plugin is timed by {@link #getTimings()}, per mod id and event type, and a warning is logged when
+ * one goes over budget.
+ */
+@ParametersAreNonnullByDefault
+public final class ClientEventDispatcher
+{
+    private static final Logger LOGGER = LogManager.getLogger("journeymap");
+    private static final ClientEvent.Type[] TYPES = ClientEvent.Type.values();
+    private static final Subscriber[] NO_SUBSCRIBERS = new Subscriber[0];
+
+    // One slot for mouse moves, then one per UI for display updates
+    private static final int MOUSE_MOVED_SLOT = 0;
+    private static final int SLOTS = 1 + Context.UI.values().length;
+
+    // Guarded by this.  Ordered by registration; entries may have a subscription but no plugin yet
+    private final Map<String, Subscriber> subscribers = new LinkedHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Executor executor;
+    private final EventTimings timings;
+
+    // Copy-on-write snapshot.  Masks are ints, which leaves room for 32 types
+    private volatile Table table = new Table();
+
+    /**
+     * Constructor using a shared executor for asynchronous delivery.
+     */
+    public ClientEventDispatcher()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor the executor for asynchronous delivery, or null to use a shared one
+     */
+    public ClientEventDispatcher(@Nullable Executor executor)
+    {
+        this(executor, new EventTimings());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor the executor for asynchronous delivery, or null to use a shared one
+     * @param timings  the timings to record calls to plugins in
+     */
+    public ClientEventDispatcher(@Nullable Executor executor, EventTimings timings)
+    {
+        this.executor = executor;
+        this.timings = timings;
+    }
+
+    /**
+     * Gets the timings of calls to plugins.
+     *
+     * @return the timings
+     */
+    public EventTimings getTimings()
+    {
+        return timings;
+    }
+
+    /**
+     * Registers a plugin to receive the events it has subscribed to.  A subscription made with the plugin's mod id
+     * before it was registered applies as well.
+     *
+     * @param plugin the plugin
+     * @throws IllegalArgumentException if a different plugin is registered with the same mod id
+     */
+    public synchronized void register(IClientPlugin plugin)
+    {
+        final String modId = plugin.getModId();
+        final Subscriber subscriber = subscribers.computeIfAbsent(modId, key -> new Subscriber(key));
+        if (subscriber.plugin != null && subscriber.plugin != plugin)
+        {
+            throw new IllegalArgumentException("A plugin is already registered for modId: " + modId);
+        }
+        subscriber.plugin = plugin;
+        rebuild();
+    }
+
+    /**
+     * Unregisters the plugin with the mod id, along with its subscription.
+     *
+     * @param modId the mod id
+     */
+    public synchronized void unregister(String modId)
+    {
+        final Subscriber subscriber = subscribers.remove(modId);
+        if (subscriber != null)
+        {
+            if (subscriber.mailbox != null)
+            {
+                subscriber.mailbox.clear();
+            }
+            rebuild();
+        }
+    }
+
+    /**
+     * Replaces the event types the mod's plugin is subscribed to, without coalescing.
+     *
+     * @param modId      the mod id
+     * @param eventTypes the event types, which may be empty
+     */
+    public void subscribe(String modId, EnumSet<ClientEvent.Type> eventTypes)
+    {
+        subscribe(modId, eventTypes, null);
+    }
+
+    /**
+     * Replaces the event types the mod's plugin is subscribed to, and how its high-frequency events are coalesced.
+     * Any events held for the plugin are discarded.
+     *
+     * @param modId      the mod id
+     * @param eventTypes the event types, which may be empty
+     * @param coalescing the coalescing limits, or null for none
+     */
+    public synchronized void subscribe(String modId, EnumSet<ClientEvent.Type> eventTypes, @Nullable EventCoalescing coalescing)
+    {
+        final Subscriber subscriber = subscribers.computeIfAbsent(modId, key -> new Subscriber(key));
+        subscriber.mask = toMask(eventTypes);
+        subscriber.coalescing = coalescing != null && coalescing.isEnabled();
+        subscriber.perFrame = subscriber.coalescing && coalescing.isPerFrame();
+        subscriber.minIntervalNanos = subscriber.coalescing ? TimeUnit.MILLISECONDS.toNanos(coalescing.getMinIntervalMillis()) : 0;
+        subscriber.minDistanceSq = subscriber.coalescing ? coalescing.getMinBlockDistance() * coalescing.getMinBlockDistance() : 0;
+        subscriber.slots = new Slot[SLOTS];
+        rebuild();
+    }
+
+    /**
+     * Sets how events are delivered to the mod's plugin.  Applies to events fired afterwards.
+     * <p>
+     * A plugin keeps one queue however often its delivery changes, so events already queued are still delivered
+     * in order and one at a time, before any fired afterwards.  A new queue capacity or overflow policy applies to
+     * events queued from then on, and after a switch to synchronous delivery, events keep being queued until the
+     * queue has drained.
+     *
+     * @param modId    the mod id
+     * @param delivery the delivery, or null for synchronous
+     */
+    public synchronized void setDelivery(String modId, @Nullable EventDelivery delivery)
+    {
+        final Subscriber subscriber = subscribers.computeIfAbsent(modId, key -> new Subscriber(key));
+        subscriber.async = delivery != null && delivery.isAsync();
+        if (subscriber.async)
+        {
+            if (subscriber.mailbox == null)
+            {
+                subscriber.mailbox = new Mailbox(subscriber);
+            }
+            subscriber.mailbox.configure(delivery);
+        }
+        rebuild();
+    }
+
+    /**
+     * Gets the event types the mod's plugin is subscribed to.
+     *
+     * @param modId the mod id
+     * @return the event types, empty if none
+     */
+    public synchronized EnumSet<ClientEvent.Type> getSubscription(String modId)
+    {
+        final Subscriber subscriber = subscribers.get(modId);
+        final EnumSet<ClientEvent.Type> result = EnumSet.noneOf(ClientEvent.Type.class);
+        if (subscriber != null)
+        {
+            for (final ClientEvent.Type type : TYPES)
+            {
+                if ((subscriber.mask & bit(type)) != 0)
+                {
+                    result.add(type);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether any registered plugin is subscribed to the event type.  Use this to avoid building an event nobody
+     * will receive.
+     *
+     * @param type the event type
+     * @return true if subscribed
+     */
+    public boolean isSubscribed(ClientEvent.Type type)
+    {
+        return (table.mask & bit(type)) != 0;
+    }
+
+    /**
+     * Gets the registered plugins subscribed to the event type, in registration order.
+     *
+     * @param type the event type
+     * @return a new list of plugins
+     */
+    public synchronized List<IClientPlugin> getSubscribers(ClientEvent.Type type)
+    {
+        final List<IClientPlugin> result = new ArrayList<>();
+        for (final Subscriber subscriber : subscribers.values())
+        {
+            if (subscriber.plugin != null && (subscriber.mask & bit(type)) != 0)
+            {
+                result.add(subscriber.plugin);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets how many events are waiting in the mod's plugin's queue.
+     *
+     * @param modId the mod id
+     * @return the count, 0 if the plugin's delivery is synchronous
+     */
+    public synchronized int getQueuedCount(String modId)
+    {
+        final Subscriber subscriber = subscribers.get(modId);
+        return (subscriber == null || subscriber.mailbox == null) ? 0 : subscriber.mailbox.size();
+    }
+
+    /**
+     * Gets how many events the mod's plugin hasn't received because of coalescing or a full queue.
+     *
+     * @param modId the mod id
+     * @return the count
+     */
+    public synchronized long getDroppedCount(String modId)
+    {
+        final Subscriber subscriber = subscribers.get(modId);
+        return subscriber == null ? 0 : subscriber.dropped.get();
+    }
+
+    /**
+     * Gets how many events plugins haven't received because of coalescing or a full queue, in total.
+     *
+     * @return the count
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Delivers the event to each plugin subscribed to its type.
+     *
+     * @param event the event
+     * @return true if the event was cancelled
+     */
+    public boolean dispatch(ClientEvent event)
+    {
+        final Table table = this.table;
+        final int ordinal = event.type.ordinal();
+        final Subscriber[] immediate = table.immediate[ordinal];
+        if (immediate.length > 0 && timings.isEnabled())
+        {
+            // Each call ends when the next starts, to read the clock once per plugin
+            long start = System.nanoTime();
+            for (int i = 0; i < immediate.length; i++)
+            {
+                invoke(immediate[i].plugin, event);
+                final long end = System.nanoTime();
+                immediate[i].timings.record(event.type, end - start);
+                start = end;
+            }
+        }
+        else
+        {
+            for (int i = 0; i < immediate.length; i++)
+            {
+                invoke(immediate[i].plugin, event);
+            }
+        }
+
+        final Subscriber[] queued = table.queued[ordinal];
+        for (int i = 0; i < queued.length; i++)
+        {
+            queued[i].post(event);
+        }
+
+        final Subscriber[] coalesced = table.coalesced[ordinal];
+        if (coalesced.length > 0)
+        {
+            final int slot = slotOf(event);
+            final long now = System.nanoTime();
+            for (int i = 0; i < coalesced.length; i++)
+            {
+                coalesced[i].offer(slot, event, now);
+            }
+        }
+        return event.isCancelled();
+    }
+
+    /**
+     * Delivers the coalesced events being held, other than those still within their minimum interval.
+     * Called by the renderer once per frame.
+     */
+    public void endFrame()
+    {
+        final Subscriber[] coalescing = this.table.coalescing;
+        if (coalescing.length > 0)
+        {
+            final long now = System.nanoTime();
+            for (int i = 0; i < coalescing.length; i++)
+            {
+                coalescing[i].flush(now);
+            }
+        }
+    }
+
+    /**
+     * Converts event types to a bitmask of their ordinals.
+     *
+     * @param eventTypes the event types
+     * @return the bitmask
+     */
+    public static int toMask(EnumSet<ClientEvent.Type> eventTypes)
+    {
+        int mask = 0;
+        for (final ClientEvent.Type type : eventTypes)
+        {
+            mask |= bit(type);
+        }
+        return mask;
+    }
+
+    /**
+     * Whether events of the type can be coalesced.
+     *
+     * @param type the event type
+     * @return true for mouse-move and display update events
+     */
+    public static boolean isCoalescible(ClientEvent.Type type)
+    {
+        return type == ClientEvent.Type.MAP_MOUSE_MOVED || type == ClientEvent.Type.DISPLAY_UPDATE;
+    }
+
+    private static int bit(ClientEvent.Type type)
+    {
+        return 1 << type.ordinal();
+    }
+
+    private static int slotOf(ClientEvent event)
+    {
+        if (event instanceof DisplayUpdateEvent)
+        {
+            return 1 + ((DisplayUpdateEvent) event).uiState.ui.ordinal();
+        }
+        return MOUSE_MOVED_SLOT;
+    }
+
+    private void deliver(Subscriber subscriber, ClientEvent event)
+    {
+        if (timings.isEnabled())
+        {
+            final long start = System.nanoTime();
+            invoke(subscriber.plugin, event);
+            subscriber.timings.record(event.type, System.nanoTime() - start);
+        }
+        else
+        {
+            invoke(subscriber.plugin, event);
+        }
+    }
+
+    private static void invoke(IClientPlugin plugin, ClientEvent event)
+    {
+        try
+        {
+            plugin.onEvent(event);
+        }
+        catch (Exception e)
+        {
+            LOGGER.error(String.format("Plugin %s failed to handle %s event", plugin.getModId(), event.type), e);
+        }
+    }
+
+    private Executor executor()
+    {
+        return executor != null ? executor : SharedExecutor.INSTANCE;
+    }
+
+    private void rebuild()
+    {
+        final Table rebuilt = new Table();
+        final List<Subscriber> immediate = new ArrayList<>(subscribers.size());
+        final List<Subscriber> queued = new ArrayList<>();
+        final List<Subscriber> coalesced = new ArrayList<>();
+        for (int ordinal = 0; ordinal < TYPES.length; ordinal++)
+        {
+            immediate.clear();
+            queued.clear();
+            coalesced.clear();
+            final boolean coalescible = isCoalescible(TYPES[ordinal]);
+            final boolean queueable = !TYPES[ordinal].cancellable;
+            for (final Subscriber subscriber : subscribers.values())
+            {
+                if (subscriber.plugin != null && (subscriber.mask & (1 << ordinal)) != 0)
+                {
+                    if (coalescible && subscriber.coalescing)
+                    {
+                        coalesced.add(subscriber);
+                    }
+                    else if (queueable && subscriber.mailbox != null)
+                    {
+                        // Includes plugins switched back to synchronous delivery, in case their queue isn't empty
+                        queued.add(subscriber);
+                    }
+                    else
+                    {
+                        immediate.add(subscriber);
+                    }
+                    rebuilt.mask |= 1 << ordinal;
+                }
+            }
+            rebuilt.immediate[ordinal] = immediate.isEmpty() ? NO_SUBSCRIBERS : immediate.toArray(NO_SUBSCRIBERS);
+            rebuilt.queued[ordinal] = queued.isEmpty() ? NO_SUBSCRIBERS : queued.toArray(NO_SUBSCRIBERS);
+            rebuilt.coalesced[ordinal] = coalesced.isEmpty() ? NO_SUBSCRIBERS : coalesced.toArray(NO_SUBSCRIBERS);
+        }
+
+        coalesced.clear();
+        for (final Subscriber subscriber : subscribers.values())
+        {
+            if (subscriber.plugin != null && subscriber.coalescing)
+            {
+                coalesced.add(subscriber);
+            }
+        }
+        rebuilt.coalescing = coalesced.toArray(NO_SUBSCRIBERS);
+        table = rebuilt;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("subscribers", subscribers.size())
+                .add("subscribedMask", Integer.toBinaryString(table.mask))
+                .add("dropped", dropped.get())
+                .toString();
+    }
+
+    /**
+     * Dispatch arrays, indexed by type ordinal.
+     */
+    private static class Table
+    {
+        final Subscriber[][] immediate = new Subscriber[TYPES.length][];
+        final Subscriber[][] queued = new Subscriber[TYPES.length][];
+        final Subscriber[][] coalesced = new Subscriber[TYPES.length][];
+        Subscriber[] coalescing = NO_SUBSCRIBERS;
+        int mask;
+
+        Table()
+        {
+            for (int i = 0; i < TYPES.length; i++)
+            {
+                immediate[i] = NO_SUBSCRIBERS;
+                queued[i] = NO_SUBSCRIBERS;
+                coalesced[i] = NO_SUBSCRIBERS;
+            }
+        }
+    }
+
+    /**
+     * A mod's plugin, once registered, and its subscription.
+     */
+    private class Subscriber
+    {
+        final EventTimings.Owner timings;
+        final AtomicLong dropped = new AtomicLong();
+        IClientPlugin plugin;
+        int mask;
+        boolean coalescing;
+        boolean perFrame;
+        long minIntervalNanos;
+        double minDistanceSq;
+        Slot[] slots = new Slot[SLOTS];
+        // Created on the first switch to asynchronous delivery, and kept
+        Mailbox mailbox;
+        boolean async;
+
+        Subscriber(String modId)
+        {
+            this.timings = ClientEventDispatcher.this.timings.owner(modId);
+        }
+
+        /**
+         * Delivers the event now, holds it, or drops it.
+         */
+        void offer(int index, ClientEvent event, long now)
+        {
+            Slot slot = slots[index];
+            if (slot == null)
+            {
+                slot = slots[index] = new Slot();
+            }
+
+            if (minDistanceSq > 0 && event instanceof FullscreenMapEvent)
+            {
+                final FullscreenMapEvent mapEvent = (FullscreenMapEvent) event;
+                if (slot.located && distanceSq(mapEvent, slot) < minDistanceSq)
+                {
+                    drop();
+                    return;
+                }
+                slot.located = true;
+                slot.blockX = mapEvent.getBlockX();
+                slot.blockZ = mapEvent.getBlockZ();
+            }
+
+            // A reusable event may be held as is: the next one of its kind is the same instance, and replaces it
+            if (slot.pending != null)
+            {
+                // Latest wins
+                drop();
+                slot.pending = null;
+            }
+            if (perFrame || (slot.delivered && now - slot.deliveredAt < minIntervalNanos))
+            {
+                slot.pending = event;
+            }
+            else
+            {
+                deliver(slot, event, now);
+            }
+        }
+
+        /**
+         * Delivers the held events which are due.
+         */
+        void flush(long now)
+        {
+            final Slot[] slots = this.slots;
+            for (int i = 0; i < slots.length; i++)
+            {
+                final Slot slot = slots[i];
+                if (slot == null || slot.pending == null)
+                {
+                    continue;
+                }
+                if (slot.delivered && now - slot.deliveredAt < minIntervalNanos)
+                {
+                    continue;
+                }
+                final ClientEvent event = slot.pending;
+                slot.pending = null;
+                if ((mask & bit(event.type)) != 0)
+                {
+                    deliver(slot, event, now);
+                }
+            }
+        }
+
+        private void deliver(Slot slot, ClientEvent event, long now)
+        {
+            slot.delivered = true;
+            slot.deliveredAt = now;
+            post(event);
+        }
+
+        /**
+         * Delivers a non-cancellable event now, or queues it if delivery is asynchronous or the queue still has
+         * events from before a switch to synchronous delivery.
+         */
+        void post(ClientEvent event)
+        {
+            final Mailbox mailbox = this.mailbox;
+            if (mailbox != null && (async || mailbox.isBusy()))
+            {
+                mailbox.enqueue(event);
+            }
+            else
+            {
+                ClientEventDispatcher.this.deliver(this, event);
+            }
+        }
+
+        void drop()
+        {
+            dropped.incrementAndGet();
+            ClientEventDispatcher.this.dropped.incrementAndGet();
+        }
+
+        private double distanceSq(FullscreenMapEvent event, Slot slot)
+        {
+            final double dx = event.getBlockX() - slot.blockX;
+            final double dz = event.getBlockZ() - slot.blockZ;
+            return dx * dx + dz * dz;
+        }
+    }
+
+    /**
+     * A plugin's queue of events for asynchronous delivery.  At most one task drains it at a time, so the plugin
+     * receives events in order and never concurrently.  The capacity and overflow policy can be changed while
+     * events are queued.
+     */
+    private class Mailbox implements Runnable
+    {
+        final Subscriber subscriber;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notFull = lock.newCondition();
+
+        // Guarded by lock
+        final ArrayDeque<ClientEvent> queue = new ArrayDeque<>();
+        int capacity;
+        EventDelivery.Overflow overflow;
+        long blockTimeoutNanos;
+
+        // Written under lock.  True from the first event queued until a drain finds the queue empty
+        volatile boolean scheduled;
+
+        Mailbox(Subscriber subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        void configure(EventDelivery delivery)
+        {
+            lock.lock();
+            try
+            {
+                capacity = delivery.getQueueCapacity();
+                overflow = delivery.getOverflow();
+                blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(delivery.getBlockTimeoutMillis());
+                // The capacity may have grown
+                notFull.signalAll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Whether events are queued or still being delivered.
+         */
+        boolean isBusy()
+        {
+            return scheduled;
+        }
+
+        int size()
+        {
+            lock.lock();
+            try
+            {
+                return queue.size();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        void clear()
+        {
+            lock.lock();
+            try
+            {
+                queue.clear();
+                notFull.signalAll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        void enqueue(ClientEvent event)
+        {
+            // Reusable events are only valid during dispatch
+            event = event.snapshot();
+            boolean schedule = false;
+            lock.lock();
+            try
+            {
+                if (queue.size() >= capacity && !makeRoom())
+                {
+                    subscriber.drop();
+                    return;
+                }
+                queue.add(event);
+                if (!scheduled)
+                {
+                    scheduled = true;
+                    schedule = true;
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+            if (schedule)
+            {
+                execute();
+            }
+        }
+
+        /**
+         * Applies the overflow policy to a full queue.  Called with the lock held.
+         *
+         * @return false if the new event should be dropped
+         */
+        private boolean makeRoom()
+        {
+            switch (overflow)
+            {
+                case DROP_OLDEST:
+                    queue.poll();
+                    subscriber.drop();
+                    return true;
+                case BLOCK:
+                    try
+                    {
+                        long nanos = blockTimeoutNanos;
+                        while (queue.size() >= capacity)
+                        {
+                            if (nanos <= 0)
+                            {
+                                return false;
+                            }
+                            nanos = notFull.awaitNanos(nanos);
+                        }
+                        return true;
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                default:
+                    return false;
+            }
+        }
+
+        private void execute()
+        {
+            try
+            {
+                executor().execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // The next event queued tries again
+                idle();
+                LOGGER.error("Event executor rejected delivery to plugin " + subscriber.plugin.getModId(), e);
+            }
+        }
+
+        private void idle()
+        {
+            lock.lock();
+            try
+            {
+                scheduled = false;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            boolean drained = false;
+            try
+            {
+                while (true)
+                {
+                    final ClientEvent event;
+                    lock.lock();
+                    try
+                    {
+                        event = queue.poll();
+                        if (event == null)
+                        {
+                            scheduled = false;
+                            drained = true;
+                            return;
+                        }
+                        notFull.signal();
+                    }
+                    finally
+                    {
+                        lock.unlock();
+                    }
+                    deliver(subscriber, event);
+                }
+            }
+            finally
+            {
+                if (!drained)
+                {
+                    // Stopped by an error: let the next event queued start another drain
+                    idle();
+                }
+            }
+        }
+    }
+
+    /**
+     * Executor shared by dispatchers which weren't given one, created on first use.
+     */
+    private static class SharedExecutor
+    {
+        static final Executor INSTANCE = create();
+
+        private static Executor create()
+        {
+            try
+            {
+                // Java 21 and later
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                final AtomicInteger threads = new AtomicInteger();
+                return Executors.newCachedThreadPool(runnable ->
+                {
+                    final Thread thread = new Thread(runnable, "JourneyMap API events " + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    /**
+     * The coalescing state for one kind of event.
+     */
+    private static class Slot
+    {
+        ClientEvent pending;
+        boolean located;
+        int blockX;
+        int blockZ;
+        boolean delivered;
+        long deliveredAt;
+    }
+}
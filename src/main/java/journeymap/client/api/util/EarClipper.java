@@ -0,0 +1,488 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import java.util.Arrays;
+
+/**
+ * Triangulates a polygon with holes by ear clipping.
+ * <p>
+ * The outer ring is linked counterclockwise and each hole clockwise.  Holes are joined to the outer ring, rightmost
+ * first, by a pair of coincident edges between the hole's rightmost vertex and a ring vertex it can see, leaving a
+ * single ring.  Ears are then cut from that ring until only one triangle is left.  Testing whether an ear holds
+ * any other vertex uses a coarse grid of the ring's vertices, so large polygons don't need a scan of the whole
+ * ring for every ear.
+ */
+final class EarClipper
+{
+    private EarClipper()
+    {
+    }
+
+    /**
+     * Triangulates.
+     *
+     * @param coords      x, z pairs: the outer ring followed by each hole
+     * @param holeStarts  vertex index at which each hole starts
+     * @param vertexCount number of vertices in coords
+     * @return vertex indices, three per triangle, each counterclockwise with +x right and +z up
+     */
+    static int[] triangulate(double[] coords, int[] holeStarts, int vertexCount)
+    {
+        final int outerEnd = holeStarts.length > 0 ? holeStarts[0] : vertexCount;
+        final Vertex ring = link(coords, 0, outerEnd, true);
+        if (ring == null)
+        {
+            return new int[0];
+        }
+
+        if (holeStarts.length > 0)
+        {
+            final Vertex[] holes = new Vertex[holeStarts.length];
+            int holeCount = 0;
+            for (int i = 0; i < holeStarts.length; i++)
+            {
+                final int end = i + 1 < holeStarts.length ? holeStarts[i + 1] : vertexCount;
+                final Vertex hole = link(coords, holeStarts[i], end, false);
+                if (hole != null)
+                {
+                    holes[holeCount++] = rightmost(hole);
+                }
+            }
+
+            // Rightmost first, so a hole can only be joined to the outer ring or to holes already part of it
+            Arrays.sort(holes, 0, holeCount, (a, b) -> Double.compare(b.x, a.x));
+            for (int i = 0; i < holeCount; i++)
+            {
+                join(holes[i], ring);
+            }
+        }
+
+        int size = 0;
+        Vertex v = ring;
+        do
+        {
+            size++;
+            v = v.next;
+        }
+        while (v != ring);
+
+        return clip(ring, size);
+    }
+
+    /**
+     * Links a ring of vertices with the winding wanted, leaving out repeated points.
+     *
+     * @return any vertex of the ring, or null if it has no area
+     */
+    private static Vertex link(double[] coords, int start, int end, boolean counterclockwise)
+    {
+        double area = 0;
+        for (int i = start, j = end - 1; i < end; j = i++)
+        {
+            area += coords[j * 2] * coords[i * 2 + 1] - coords[i * 2] * coords[j * 2 + 1];
+        }
+        if (area == 0)
+        {
+            return null;
+        }
+
+        final boolean forward = (area > 0) == counterclockwise;
+        Vertex last = null;
+        for (int n = 0; n < end - start; n++)
+        {
+            final int i = forward ? start + n : end - 1 - n;
+            final double x = coords[i * 2];
+            final double z = coords[i * 2 + 1];
+            if (last != null && last.x == x && last.z == z)
+            {
+                continue;
+            }
+
+            final Vertex vertex = new Vertex(i, x, z);
+            if (last == null)
+            {
+                vertex.prev = vertex;
+                vertex.next = vertex;
+            }
+            else
+            {
+                vertex.prev = last;
+                vertex.next = last.next;
+                last.next.prev = vertex;
+                last.next = vertex;
+            }
+            last = vertex;
+        }
+
+        final Vertex first = last.next;
+        if (last != first && last.x == first.x && last.z == first.z)
+        {
+            unlink(last);
+            last = last.prev;
+        }
+        return last.next == last.prev ? null : last;
+    }
+
+    private static Vertex rightmost(Vertex start)
+    {
+        Vertex result = start;
+        for (Vertex v = start.next; v != start; v = v.next)
+        {
+            if (v.x > result.x)
+            {
+                result = v;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Joins a hole to the ring with a pair of edges from its rightmost vertex to a ring vertex it can see.
+     * A hole which isn't inside the ring is left out.
+     */
+    private static void join(Vertex hole, Vertex ring)
+    {
+        final Vertex target = findVisible(hole, ring);
+        if (target == null)
+        {
+            return;
+        }
+
+        final Vertex holeEnd = hole.prev;
+        final Vertex targetNext = target.next;
+        final Vertex holeCopy = new Vertex(hole.index, hole.x, hole.z);
+        final Vertex targetCopy = new Vertex(target.index, target.x, target.z);
+
+        // target -> hole -> ... -> holeEnd -> holeCopy -> targetCopy -> targetNext
+        target.next = hole;
+        hole.prev = target;
+        holeEnd.next = holeCopy;
+        holeCopy.prev = holeEnd;
+        holeCopy.next = targetCopy;
+        targetCopy.prev = holeCopy;
+        targetCopy.next = targetNext;
+        targetNext.prev = targetCopy;
+    }
+
+    /**
+     * Finds a ring vertex which can be joined to a point without crossing the ring, by casting a ray along +x to
+     * the nearest ring edge.  If the ray hits a vertex, that vertex is visible.  Otherwise the end of the edge
+     * further along +x is visible unless ring vertices are inside the triangle between the point, the hit and
+     * that end, in which case the one at the smallest angle to the ray is.
+     *
+     * @return the vertex, or null if the ray doesn't hit the ring
+     */
+    private static Vertex findVisible(Vertex from, Vertex ring)
+    {
+        final double fx = from.x;
+        final double fz = from.z;
+        double hitX = Double.POSITIVE_INFINITY;
+        Vertex target = null;
+        boolean hitVertex = false;
+        Vertex v = ring;
+        do
+        {
+            final Vertex w = v.next;
+            if (v.z == fz)
+            {
+                if (v.x >= fx && v.x < hitX)
+                {
+                    hitX = v.x;
+                    target = v;
+                    hitVertex = true;
+                }
+            }
+            else if ((v.z < fz) != (w.z < fz) && w.z != fz)
+            {
+                final double x = v.x + (fz - v.z) * (w.x - v.x) / (w.z - v.z);
+                if (x >= fx && x < hitX)
+                {
+                    hitX = x;
+                    target = v.x > w.x ? v : w;
+                    hitVertex = false;
+                }
+            }
+            v = w;
+        }
+        while (v != ring);
+
+        if (target == null)
+        {
+            return null;
+        }
+
+        if (!hitVertex)
+        {
+            final double tx = target.x;
+            final double tz = target.z;
+            double bestTan = Math.abs(tz - fz) / (tx - fx);
+            v = ring;
+            do
+            {
+                if (v.x > fx && (v.x != tx || v.z != tz) && inTriangle(fx, fz, hitX, fz, tx, tz, v.x, v.z))
+                {
+                    final double tan = Math.abs(v.z - fz) / (v.x - fx);
+                    if (tan < bestTan || (tan == bestTan && v.x < target.x))
+                    {
+                        bestTan = tan;
+                        target = v;
+                    }
+                }
+                v = v.next;
+            }
+            while (v != ring);
+        }
+
+        // Earlier joins leave coincident copies of a vertex; use the one whose interior angle faces the point
+        v = target;
+        do
+        {
+            if (v.x == target.x && v.z == target.z && facesInward(v, fx, fz))
+            {
+                return v;
+            }
+            v = v.next;
+        }
+        while (v != target);
+        return target;
+    }
+
+    /**
+     * Whether the direction from a vertex to a point is inside the polygon's interior angle at that vertex.
+     */
+    private static boolean facesInward(Vertex v, double x, double z)
+    {
+        final boolean leftOfNext = turn(v.x, v.z, v.next.x, v.next.z, x, z) > 0;
+        final boolean leftOfPrev = turn(v.prev.x, v.prev.z, v.x, v.z, x, z) > 0;
+        if (turn(v.prev, v, v.next) >= 0)
+        {
+            return leftOfNext && leftOfPrev;
+        }
+        return leftOfNext || leftOfPrev;
+    }
+
+    /**
+     * Cuts ears from the ring.  Vertices on a straight line are dropped without making a triangle.  If a whole
+     * lap finds no ear, which only happens when the input crosses itself, convex vertices are cut regardless,
+     * and then any vertex, so the loop always ends.
+     */
+    private static int[] clip(Vertex start, int size)
+    {
+        final int[] triangles = new int[Math.max(0, size - 2) * 3];
+        int count = 0;
+        final Grid grid = new Grid(start, size);
+        Vertex v = start;
+        int misses = 0;
+        while (size > 3)
+        {
+            final Vertex prev = v.prev;
+            final Vertex next = v.next;
+            final double turn = turn(prev, v, next);
+            if (turn == 0)
+            {
+                unlink(v);
+                size--;
+                misses = 0;
+                v = prev;
+            }
+            else if (misses > 2 * size || (turn > 0 && (misses > size || grid.isEmpty(prev, v, next))))
+            {
+                triangles[count++] = prev.index;
+                triangles[count++] = v.index;
+                triangles[count++] = next.index;
+                unlink(v);
+                size--;
+                misses = 0;
+                v = next;
+            }
+            else
+            {
+                misses++;
+                v = next;
+            }
+        }
+
+        if (size == 3 && turn(v.prev, v, v.next) != 0)
+        {
+            triangles[count++] = v.prev.index;
+            triangles[count++] = v.index;
+            triangles[count++] = v.next.index;
+        }
+        return count == triangles.length ? triangles : Arrays.copyOf(triangles, count);
+    }
+
+    private static void unlink(Vertex v)
+    {
+        v.prev.next = v.next;
+        v.next.prev = v.prev;
+        v.removed = true;
+    }
+
+    /**
+     * Twice the signed area of the triangle; positive if it turns counterclockwise.
+     */
+    private static double turn(double ax, double az, double bx, double bz, double cx, double cz)
+    {
+        return (bx - ax) * (cz - az) - (bz - az) * (cx - ax);
+    }
+
+    private static double turn(Vertex a, Vertex b, Vertex c)
+    {
+        return turn(a.x, a.z, b.x, b.z, c.x, c.z);
+    }
+
+    /**
+     * Whether a point is inside or on the edge of a triangle of either winding.
+     */
+    private static boolean inTriangle(double ax, double az, double bx, double bz, double cx, double cz,
+                                      double px, double pz)
+    {
+        final double ab = turn(ax, az, bx, bz, px, pz);
+        final double bc = turn(bx, bz, cx, cz, px, pz);
+        final double ca = turn(cx, cz, ax, az, px, pz);
+        return !((ab < 0 || bc < 0 || ca < 0) && (ab > 0 || bc > 0 || ca > 0));
+    }
+
+    private static final class Vertex
+    {
+        final int index;
+        final double x;
+        final double z;
+        Vertex prev;
+        Vertex next;
+        boolean removed;
+
+        Vertex(int index, double x, double z)
+        {
+            this.index = index;
+            this.x = x;
+            this.z = z;
+        }
+    }
+
+    /**
+     * The ring's vertices bucketed by position.  Cut vertices are skipped rather than taken out.
+     */
+    private static final class Grid
+    {
+        private final double minX;
+        private final double minZ;
+        private final double scaleX;
+        private final double scaleZ;
+        private final int side;
+        private final int[] cellStarts;
+        private final Vertex[] vertices;
+
+        Grid(Vertex start, int size)
+        {
+            double minX = start.x;
+            double minZ = start.z;
+            double maxX = start.x;
+            double maxZ = start.z;
+            for (Vertex v = start.next; v != start; v = v.next)
+            {
+                minX = Math.min(minX, v.x);
+                minZ = Math.min(minZ, v.z);
+                maxX = Math.max(maxX, v.x);
+                maxZ = Math.max(maxZ, v.z);
+            }
+            this.minX = minX;
+            this.minZ = minZ;
+            this.side = Math.max(1, (int) Math.sqrt(size / 2.0));
+            this.scaleX = maxX > minX ? side / (maxX - minX) : 0;
+            this.scaleZ = maxZ > minZ ? side / (maxZ - minZ) : 0;
+
+            // Counting sort into cells
+            this.cellStarts = new int[side * side + 1];
+            Vertex v = start;
+            do
+            {
+                cellStarts[cell(v.x, v.z) + 1]++;
+                v = v.next;
+            }
+            while (v != start);
+            for (int i = 1; i < cellStarts.length; i++)
+            {
+                cellStarts[i] += cellStarts[i - 1];
+            }
+            this.vertices = new Vertex[size];
+            final int[] fill = Arrays.copyOf(cellStarts, cellStarts.length - 1);
+            do
+            {
+                vertices[fill[cell(v.x, v.z)]++] = v;
+                v = v.next;
+            }
+            while (v != start);
+        }
+
+        private int column(double x)
+        {
+            return Math.min(side - 1, (int) ((x - minX) * scaleX));
+        }
+
+        private int row(double z)
+        {
+            return Math.min(side - 1, (int) ((z - minZ) * scaleZ));
+        }
+
+        private int cell(double x, double z)
+        {
+            return row(z) * side + column(x);
+        }
+
+        /**
+         * Whether no vertex still in the ring is inside the triangle or on the edge from a to c, other than
+         * copies of its own corners.
+         */
+        boolean isEmpty(Vertex a, Vertex b, Vertex c)
+        {
+            final int firstColumn = column(Math.min(a.x, Math.min(b.x, c.x)));
+            final int lastColumn = column(Math.max(a.x, Math.max(b.x, c.x)));
+            final int firstRow = row(Math.min(a.z, Math.min(b.z, c.z)));
+            final int lastRow = row(Math.max(a.z, Math.max(b.z, c.z)));
+            for (int row = firstRow; row <= lastRow; row++)
+            {
+                for (int i = cellStarts[row * side + firstColumn], end = cellStarts[row * side + lastColumn + 1]; i < end; i++)
+                {
+                    final Vertex p = vertices[i];
+                    if (p.removed || isCorner(p, a) || isCorner(p, b) || isCorner(p, c))
+                    {
+                        continue;
+                    }
+                    // The ear is counterclockwise.  A point on its two ring edges can only be a copy left by a
+                    // hole join, which doesn't stop it being cut, but one on the new edge from a to c does.
+                    if (turn(a.x, a.z, b.x, b.z, p.x, p.z) > 0 && turn(b.x, b.z, c.x, c.z, p.x, p.z) > 0
+                        && turn(c.x, c.z, a.x, a.z, p.x, p.z) >= 0)
+                    {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static boolean isCorner(Vertex p, Vertex corner)
+        {
+            return p.x == corner.x && p.z == corner.z;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.base.MoreObjects;
+import journeymap.client.api.event.ClientEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records how long event handlers take, per handler and per event, so that a plugin which makes the map stutter
+ * can be found.
+ * <p>
+ * Handlers are identified by an owner: the mod id for {@link journeymap.client.api.IClientPlugin}s, or a
+ * description of the listener for Forge bus events.  Events are identified by name: the {@link ClientEvent.Type}
+ * name, or the event's simple class name.  Each pair gets a {@link LatencyHistogram} and a count of calls over
+ * budget, and a warning is logged when a call goes over budget, at most once per {@link #WARNING_INTERVAL_MILLIS}
+ * for each pair.
+ * <p>
+ * Recording is lock-free and thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public final class EventTimings
+{
+    /**
+     * Default budget for one call to a handler.
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 5;
+
+    /**
+     * Least time between warnings about the same handler and event.
+     */
+    public static final long WARNING_INTERVAL_MILLIS = 10_000;
+
+    private static final Logger LOGGER = LogManager.getLogger("journeymap");
+    private static final ClientEvent.Type[] TYPES = ClientEvent.Type.values();
+
+    private final Map<String, Owner> owners = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+    private volatile long budgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BUDGET_MILLIS);
+
+    /**
+     * Whether timings are recorded.  True by default.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Sets whether timings are recorded.
+     *
+     * @param enabled true to record
+     * @return this
+     */
+    public EventTimings setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Gets the budget for one call to a handler, over which a warning is logged.
+     *
+     * @return nanos
+     */
+    public long getBudgetNanos()
+    {
+        return budgetNanos;
+    }
+
+    /**
+     * Sets the budget for one call to a handler, over which a warning is logged.
+     *
+     * @param budget the budget, greater than 0
+     * @param unit   the unit of the budget
+     * @return this
+     */
+    public EventTimings setBudget(long budget, TimeUnit unit)
+    {
+        if (budget <= 0)
+        {
+            throw new IllegalArgumentException("budget must be greater than 0: " + budget);
+        }
+        this.budgetNanos = unit.toNanos(budget);
+        return this;
+    }
+
+    /**
+     * Records a call to a plugin's handler for a ClientEvent.
+     *
+     * @param owner the mod id
+     * @param type  the event type
+     * @param nanos how long the call took
+     */
+    public void record(String owner, ClientEvent.Type type, long nanos)
+    {
+        owner(owner).record(type, nanos);
+    }
+
+    /**
+     * Records a call to a handler for some other event.
+     *
+     * @param owner     who handled the event
+     * @param eventName the event name
+     * @param nanos     how long the call took
+     */
+    public void record(String owner, String eventName, long nanos)
+    {
+        owner(owner).record(eventName, nanos);
+    }
+
+    /**
+     * Gets the owners which have recorded timings.
+     *
+     * @return a sorted copy
+     */
+    public Set<String> getOwners()
+    {
+        return new TreeSet<>(owners.keySet());
+    }
+
+    /**
+     * Gets the names of the events an owner has recorded timings for.
+     *
+     * @param owner the owner
+     * @return a sorted copy, empty if none
+     */
+    public Set<String> getEventNames(String owner)
+    {
+        final Owner found = owners.get(owner);
+        return found == null ? new TreeSet<>() : new TreeSet<>(found.byName.keySet());
+    }
+
+    /**
+     * Gets the timings for an owner's handler of a ClientEvent type.
+     *
+     * @param owner the mod id
+     * @param type  the event type
+     * @return the histogram, or null if nothing has been recorded
+     */
+    @Nullable
+    public LatencyHistogram getHistogram(String owner, ClientEvent.Type type)
+    {
+        return getHistogram(owner, type.name());
+    }
+
+    /**
+     * Gets the timings for an owner's handler of an event.
+     *
+     * @param owner     the owner
+     * @param eventName the event name
+     * @return the histogram, or null if nothing has been recorded
+     */
+    @Nullable
+    public LatencyHistogram getHistogram(String owner, String eventName)
+    {
+        final Timer timer = timer(owner, eventName);
+        return timer == null ? null : timer.histogram;
+    }
+
+    /**
+     * Gets how many calls to an owner's handler of an event went over budget.
+     *
+     * @param owner     the owner
+     * @param eventName the event name
+     * @return the count
+     */
+    public long getOverBudgetCount(String owner, String eventName)
+    {
+        final Timer timer = timer(owner, eventName);
+        return timer == null ? 0 : timer.overBudget.get();
+    }
+
+    /**
+     * Describes the timings recorded, one line per owner and event, with the most total time first.
+     *
+     * @return the report
+     */
+    public String report()
+    {
+        final List<Timer> timers = new ArrayList<>();
+        for (final Owner owner : owners.values())
+        {
+            timers.addAll(owner.byName.values());
+        }
+        timers.sort(Comparator.comparingLong((Timer timer) -> timer.histogram.getTotalNanos()).reversed());
+
+        final StringBuilder sb = new StringBuilder();
+        for (final Timer timer : timers)
+        {
+            final LatencyHistogram histogram = timer.histogram;
+            sb.append(String.format("%s %s: calls=%d totalMs=%.1f p50Ms=%.3f p99Ms=%.3f maxMs=%.3f overBudget=%d%n",
+                    timer.owner, timer.eventName, histogram.getCount(), millis(histogram.getTotalNanos()),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getMaxNanos()), timer.overBudget.get()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Clears all timings.
+     */
+    public void reset()
+    {
+        for (final Owner owner : owners.values())
+        {
+            for (final Timer timer : owner.byName.values())
+            {
+                timer.histogram.reset();
+                timer.overBudget.set(0);
+            }
+        }
+    }
+
+    /**
+     * Gets the timings for an owner, for callers which record often and want to skip the lookup.
+     */
+    Owner owner(String owner)
+    {
+        return owners.computeIfAbsent(owner, Owner::new);
+    }
+
+    @Nullable
+    private Timer timer(String owner, String eventName)
+    {
+        final Owner found = owners.get(owner);
+        return found == null ? null : found.byName.get(eventName);
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("budgetNanos", budgetNanos)
+                .add("owners", owners.size())
+                .toString();
+    }
+
+    /**
+     * The timings of one owner's handlers.
+     */
+    final class Owner
+    {
+        final String name;
+        final Map<String, Timer> byName = new ConcurrentHashMap<>();
+        final AtomicReferenceArray<Timer> byType = new AtomicReferenceArray<>(TYPES.length);
+
+        Owner(String name)
+        {
+            this.name = name;
+        }
+
+        void record(ClientEvent.Type type, long nanos)
+        {
+            Timer timer = byType.get(type.ordinal());
+            if (timer == null)
+            {
+                timer = byName.computeIfAbsent(type.name(), eventName -> new Timer(name, eventName));
+                byType.set(type.ordinal(), timer);
+            }
+            timer.record(nanos);
+        }
+
+        void record(String eventName, long nanos)
+        {
+            byName.computeIfAbsent(eventName, key -> new Timer(name, key)).record(nanos);
+        }
+    }
+
+    /**
+     * The timings of one owner's handler for one event.
+     */
+    private final class Timer
+    {
+        final String owner;
+        final String eventName;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final AtomicLong overBudget = new AtomicLong();
+        final AtomicLong lastWarning = new AtomicLong();
+
+        Timer(String owner, String eventName)
+        {
+            this.owner = owner;
+            this.eventName = eventName;
+        }
+
+        void record(long nanos)
+        {
+            histogram.record(nanos);
+
+            final long budget = budgetNanos;
+            if (nanos > budget)
+            {
+                final long overBudgetCount = overBudget.incrementAndGet();
+                final long now = System.nanoTime();
+                final long last = lastWarning.get();
+                if ((last == 0 || now - last >= TimeUnit.MILLISECONDS.toNanos(WARNING_INTERVAL_MILLIS))
+                        && lastWarning.compareAndSet(last, now))
+                {
+                    LOGGER.warn(String.format("%s took %.1fms to handle %s, over the %.1fms budget (%d times so far)",
+                            owner, millis(nanos), eventName, millis(budget), overBudgetCount));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, in the style of HdrHistogram: values are counted in buckets
+ * whose width grows with the value, so that any value is reported within 1/16th (about 6%) of the truth, from
+ * single nanoseconds up to several minutes, in fixed memory.
+ * <p>
+ * Recording is two atomic additions and is safe from any number of threads.  Reads aren't a consistent
+ * snapshot while values are being recorded, which is fine for monitoring.
+ */
+public final class LatencyHistogram
+{
+    // 16 sub-buckets per power of two
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    // Values from 2^MAX_EXPONENT ns (about 18 minutes) up are counted in the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration; negative values are counted as 0
+     */
+    public void record(long nanos)
+    {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.addAndGet(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Gets how many durations were recorded.
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    /**
+     * Gets the sum of the durations recorded.
+     *
+     * @return nanos
+     */
+    public long getTotalNanos()
+    {
+        return total.get();
+    }
+
+    /**
+     * Gets the longest duration recorded.
+     *
+     * @return nanos, 0 if none
+     */
+    public long getMaxNanos()
+    {
+        return max.get();
+    }
+
+    /**
+     * Gets the mean duration.
+     *
+     * @return nanos, 0 if none
+     */
+    public double getMeanNanos()
+    {
+        final long n = getCount();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Gets the duration which the given percentage of recorded durations are at or below, to within the
+     * histogram's precision.
+     *
+     * @param percentile between 0 and 100
+     * @return nanos, 0 if none
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if (!(percentile >= 0 && percentile <= 100))
+        {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        }
+
+        long n = 0;
+        final long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0)
+        {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears the histogram.  Values recorded at the same time may be lost.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value)
+    {
+        if (value < SUB_COUNT)
+        {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+        {
+            return BUCKETS - 1;
+        }
+        // The top SUB_BITS + 1 bits, of which the first is always set
+        final int top = (int) (value >>> (exponent - SUB_BITS));
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + (top - SUB_COUNT);
+    }
+
+    static long highestValueIn(int bucket)
+    {
+        if (bucket < SUB_COUNT)
+        {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1)
+        {
+            return Long.MAX_VALUE;
+        }
+        final int shift = bucket / SUB_COUNT - 1;
+        final long top = SUB_COUNT + bucket % SUB_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("count", getCount())
+                .add("meanMs", format(getMeanNanos()))
+                .add("p50Ms", format(getValueAtPercentile(50)))
+                .add("p99Ms", format(getValueAtPercentile(99)))
+                .add("maxMs", format(getMaxNanos()))
+                .toString();
+    }
+
+    private static String format(double nanos)
+    {
+        return String.format("%.3f", nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.Overlay;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A spatial index of {@link Overlay}s, partitioned by {@link Overlay#getDimension()} and then by a coarse
+ * grid of block cells.  Finding the overlays within a map viewport only visits the cells the viewport covers,
+ * rather than every overlay.
+ * <p>
+ * Bounds are captured from {@link Overlay#getBounds()} when an overlay is added, so an overlay which has been
+ * changed must be added again, just as it must be shown again via {@link journeymap.client.api.IClientAPI#show}.
+ * Overlays are identified by {@link Overlay#getGuid()}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class OverlayIndex
+{
+    /**
+     * Default cell size as a power of two: 512 blocks, the size of a region.
+     */
+    public static final int DEFAULT_CELL_SHIFT = 9;
+
+    /**
+     * Overlays spanning more cells than this are kept in a per-dimension list instead of the grid.
+     */
+    private static final int MAX_CELLS_PER_ENTRY = 64;
+
+    private final int cellShift;
+    private final Map<ResourceKey<Level>, Cells> dimensions = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int queryStamp;
+
+    /**
+     * Constructor using {@link #DEFAULT_CELL_SHIFT}.
+     */
+    public OverlayIndex()
+    {
+        this(DEFAULT_CELL_SHIFT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cellShift cell size as a power of two, in blocks
+     */
+    public OverlayIndex(int cellShift)
+    {
+        if (cellShift < 4 || cellShift > 16)
+        {
+            throw new IllegalArgumentException("cellShift must be between 4 and 16");
+        }
+        this.cellShift = cellShift;
+    }
+
+    /**
+     * Adds an overlay, replacing any previously added overlay with the same GUID.
+     *
+     * @param overlay the overlay
+     */
+    public void add(Overlay overlay)
+    {
+        remove(overlay);
+
+        final Entry entry = new Entry(overlay);
+        entries.put(overlay.getGuid(), entry);
+
+        final Cells cells = dimensions.computeIfAbsent(overlay.getDimension(), dim -> new Cells());
+        final int cellMinX = entry.minX >> cellShift;
+        final int cellMinZ = entry.minZ >> cellShift;
+        final int cellMaxX = entry.maxX >> cellShift;
+        final int cellMaxZ = entry.maxZ >> cellShift;
+        if ((long) (cellMaxX - cellMinX + 1) * (cellMaxZ - cellMinZ + 1) > MAX_CELLS_PER_ENTRY)
+        {
+            cells.oversize.add(entry);
+            return;
+        }
+        for (int cx = cellMinX; cx <= cellMaxX; cx++)
+        {
+            for (int cz = cellMinZ; cz <= cellMaxZ; cz++)
+            {
+                cells.grid.computeIfAbsent(ChunkPos.asLong(cx, cz), key -> new ArrayList<>(4)).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes an overlay.
+     *
+     * @param overlay the overlay
+     * @return true if the overlay was indexed
+     */
+    public boolean remove(Overlay overlay)
+    {
+        final Entry entry = entries.remove(overlay.getGuid());
+        if (entry == null)
+        {
+            return false;
+        }
+
+        final Cells cells = dimensions.get(entry.dimension);
+        if (cells.oversize.remove(entry))
+        {
+            return true;
+        }
+        for (int cx = entry.minX >> cellShift; cx <= entry.maxX >> cellShift; cx++)
+        {
+            for (int cz = entry.minZ >> cellShift; cz <= entry.maxZ >> cellShift; cz++)
+            {
+                final long key = ChunkPos.asLong(cx, cz);
+                final List<Entry> cell = cells.grid.get(key);
+                if (cell != null && cell.remove(entry) && cell.isEmpty())
+                {
+                    cells.grid.remove(key);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all overlays matching the filter.
+     *
+     * @param filter the filter
+     */
+    public void removeIf(Predicate<Overlay> filter)
+    {
+        final List<Overlay> matches = new ArrayList<>();
+        for (Entry entry : entries.values())
+        {
+            if (filter.test(entry.overlay))
+            {
+                matches.add(entry.overlay);
+            }
+        }
+        matches.forEach(this::remove);
+    }
+
+    /**
+     * Removes all overlays.
+     */
+    public void clear()
+    {
+        entries.clear();
+        dimensions.clear();
+    }
+
+    /**
+     * Whether an overlay with the same GUID has been added.
+     *
+     * @param overlay the overlay
+     * @return true if indexed
+     */
+    public boolean contains(Overlay overlay)
+    {
+        return entries.containsKey(overlay.getGuid());
+    }
+
+    /**
+     * Number of indexed overlays.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Gets the overlays in a dimension whose bounds intersect the block bounds (XZ only), and whose
+     * zoom range overlaps the zoom range specified.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the block bounds, such as {@link UIState#blockBounds}
+     * @param minZoom     lowest zoom level
+     * @param maxZoom     highest zoom level
+     * @return the overlays, in no particular order
+     */
+    public List<Overlay> query(@Nullable ResourceKey<Level> dimension, AABB blockBounds, int minZoom, int maxZoom)
+    {
+        final List<Overlay> result = new ArrayList<>();
+        query(dimension, blockBounds, minZoom, maxZoom, result::add);
+        return result;
+    }
+
+    /**
+     * Visits the overlays in a dimension whose bounds intersect the block bounds (XZ only), and whose
+     * zoom range overlaps the zoom range specified.  Each overlay is visited once.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the block bounds, such as {@link UIState#blockBounds}
+     * @param minZoom     lowest zoom level
+     * @param maxZoom     highest zoom level
+     * @param consumer    receives each overlay
+     */
+    public void query(@Nullable ResourceKey<Level> dimension, AABB blockBounds, int minZoom, int maxZoom, Consumer<Overlay> consumer)
+    {
+        final Cells cells = dimensions.get(dimension);
+        if (cells == null)
+        {
+            return;
+        }
+
+        final int minX = (int) Math.floor(blockBounds.minX);
+        final int minZ = (int) Math.floor(blockBounds.minZ);
+        final int maxX = (int) Math.ceil(blockBounds.maxX);
+        final int maxZ = (int) Math.ceil(blockBounds.maxZ);
+        final int stamp = ++queryStamp;
+
+        for (Entry entry : cells.oversize)
+        {
+            if (entry.matches(minX, minZ, maxX, maxZ, minZoom, maxZoom))
+            {
+                consumer.accept(entry.overlay);
+            }
+        }
+
+        final int cellMinX = minX >> cellShift;
+        final int cellMinZ = minZ >> cellShift;
+        final int cellMaxX = maxX >> cellShift;
+        final int cellMaxZ = maxZ >> cellShift;
+        if ((long) (cellMaxX - cellMinX + 1) * (cellMaxZ - cellMinZ + 1) > cells.grid.size())
+        {
+            // Viewport covers more cells than are occupied; cheaper to walk the occupied ones
+            for (Map.Entry<Long, List<Entry>> cell : cells.grid.entrySet())
+            {
+                final int cx = ChunkPos.getX(cell.getKey());
+                final int cz = ChunkPos.getZ(cell.getKey());
+                if (cx >= cellMinX && cx <= cellMaxX && cz >= cellMinZ && cz <= cellMaxZ)
+                {
+                    visit(cell.getValue(), stamp, minX, minZ, maxX, maxZ, minZoom, maxZoom, consumer);
+                }
+            }
+            return;
+        }
+        for (int cx = cellMinX; cx <= cellMaxX; cx++)
+        {
+            for (int cz = cellMinZ; cz <= cellMaxZ; cz++)
+            {
+                final List<Entry> cell = cells.grid.get(ChunkPos.asLong(cx, cz));
+                if (cell != null)
+                {
+                    visit(cell, stamp, minX, minZ, maxX, maxZ, minZoom, maxZoom, consumer);
+                }
+            }
+        }
+    }
+
+    private static void visit(List<Entry> cell, int stamp, int minX, int minZ, int maxX, int maxZ, int minZoom, int maxZoom, Consumer<Overlay> consumer)
+    {
+        for (int i = 0; i < cell.size(); i++)
+        {
+            final Entry entry = cell.get(i);
+            if (entry.stamp != stamp)
+            {
+                // Overlays spanning several cells are only reported once per query
+                entry.stamp = stamp;
+                if (entry.matches(minX, minZ, maxX, maxZ, minZoom, maxZoom))
+                {
+                    consumer.accept(entry.overlay);
+                }
+            }
+        }
+    }
+
+    /**
+     * Grid cells for one dimension.
+     */
+    private static class Cells
+    {
+        final Map<Long, List<Entry>> grid = new HashMap<>();
+        final List<Entry> oversize = new ArrayList<>();
+    }
+
+    /**
+     * An overlay and the bounds it had when added.
+     */
+    private static class Entry
+    {
+        final Overlay overlay;
+        final ResourceKey<Level> dimension;
+        final int minX;
+        final int minZ;
+        final int maxX;
+        final int maxZ;
+        final int minZoom;
+        final int maxZoom;
+        int stamp;
+
+        Entry(Overlay overlay)
+        {
+            final AABB bounds = overlay.getBounds();
+            this.overlay = overlay;
+            this.dimension = overlay.getDimension();
+            this.minX = (int) Math.floor(bounds.minX);
+            this.minZ = (int) Math.floor(bounds.minZ);
+            this.maxX = (int) Math.ceil(bounds.maxX);
+            this.maxZ = (int) Math.ceil(bounds.maxZ);
+            this.minZoom = overlay.getMinZoom();
+            this.maxZoom = overlay.getMaxZoom();
+        }
+
+        boolean matches(int minX, int minZ, int maxX, int maxZ, int minZoom, int maxZoom)
+        {
+            return this.minX <= maxX && this.maxX >= minX
+                    && this.minZ <= maxZ && this.maxZ >= minZ
+                    && this.minZoom <= maxZoom && this.maxZoom >= minZoom;
+        }
+    }
+}
@@ -22,20 +22,21 @@ package journeymap.client.api.util;
 
 import journeymap.client.api.model.MapPolygon;
 import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.model.PolygonMesh;
 import net.minecraft.core.BlockPos;
-import net.minecraft.util.Tuple;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nonnull;
 import java.awt.Polygon;
-import java.awt.Rectangle;
 import java.awt.geom.Area;
+import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Utility class related to Polygons.
@@ -69,12 +70,9 @@ public class PolygonHelper
     {
         int x = chunkX << 4;
         int z = chunkZ << 4;
-        BlockPos sw = new BlockPos(x, y, z + 16);
-        BlockPos se = new BlockPos(x + 16, y, z + 16);
-        BlockPos ne = new BlockPos(x + 16, y, z);
-        BlockPos nw = new BlockPos(x, y, z);
 
-        return new MapPolygon(sw, se, ne, nw);
+        // sw, se, ne, nw
+        return new MapPolygon(new int[]{x, x + 16, x + 16, x}, new int[]{z + 16, z + 16, z, z}, y);
     }
 
     /**
@@ -109,17 +107,22 @@ public class PolygonHelper
     @Nonnull
     public static Area createChunksArea(@Nonnull final Collection<ChunkPos> chunks)
     {
-        final Area area = new Area();
-        for (final ChunkPos chunkPos : chunks)
+        // Building the Area from traced outlines is far cheaper than adding one Area per chunk
+        final Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        for (final MapPolygonWithHoles polygon : createChunksPolygon(chunks, 0))
         {
-            area.add(new Area(new Rectangle(chunkPos.getMinBlockX(), chunkPos.getMinBlockZ(), 16, 16)));
+            appendToPath(path, polygon.hull);
+            for (final MapPolygon hole : polygon.holes)
+            {
+                appendToPath(path, hole);
+            }
         }
-        return area;
+        return new Area(path);
     }
 
     /**
      * Given a collection of chunks, creates one or more {@link MapPolygonWithHoles} that covers them.
-     * (Just a convenience wrapper for the {@link Area}-based methods.)
+     * Chunks which only touch diagonally are given separate polygons.
      *
      * @param chunks The set of chunks.
      * @param y      The y-coordinate for the resulting polygons.
@@ -128,7 +131,28 @@ public class PolygonHelper
     @Nonnull
     public static List<MapPolygonWithHoles> createChunksPolygon(@Nonnull final Collection<ChunkPos> chunks, final int y)
     {
-        return createPolygonFromArea(createChunksArea(chunks), y);
+        final long[] chunkKeys = new long[chunks.size()];
+        int index = 0;
+        for (final ChunkPos chunkPos : chunks)
+        {
+            chunkKeys[index++] = chunkPos.toLong();
+        }
+        return createChunksPolygon(chunkKeys, y);
+    }
+
+    /**
+     * Given packed chunk keys (as per {@link ChunkPos#toLong()}), creates one or more {@link MapPolygonWithHoles}
+     * that covers them.  The outlines are traced directly on the chunk grid, so this is much faster than going
+     * through an {@link Area} for large numbers of chunks.
+     *
+     * @param chunkKeys The chunk keys. Duplicates are ignored.
+     * @param y         The y-coordinate for the resulting polygons.
+     * @return One or more polygons that cover the specified chunks.
+     */
+    @Nonnull
+    public static List<MapPolygonWithHoles> createChunksPolygon(@Nonnull final long[] chunkKeys, final int y)
+    {
+        return new ChunkContourTracer(chunkKeys).trace(y);
     }
 
     /**
@@ -140,17 +164,17 @@ public class PolygonHelper
     @Nonnull
     public static Area toArea(@Nonnull final MapPolygon polygon)
     {
-        final List<BlockPos> points = polygon.getPoints();
-        final int[] xPoints = new int[points.size()];
-        final int[] yPoints = new int[points.size()];
+        final int size = polygon.size();
+        final int[] xPoints = new int[size];
+        final int[] yPoints = new int[size];
 
-        for (int i = 0; i < points.size(); ++i)
+        for (int i = 0; i < size; ++i)
         {
-            xPoints[i] = points.get(i).getX();
-            yPoints[i] = points.get(i).getZ();
+            xPoints[i] = polygon.getX(i);
+            yPoints[i] = polygon.getZ(i);
         }
 
-        return new Area(new Polygon(xPoints, yPoints, points.size()));
+        return new Area(new Polygon(xPoints, yPoints, size));
     }
 
     /**
@@ -207,6 +231,10 @@ public class PolygonHelper
      * <p>
      * Assumes that hulls use CCW point winding and holes use CW point winding, which seems to be
      * consistent with {@link #createPolygonFromArea}.
+     * <p>
+     * Each hole is assigned to the smallest hull containing it, so nested islands keep their own holes.
+     * Hulls are found via their cached bounding boxes and a point-in-polygon test, without
+     * constructing any {@link Area}s.
      *
      * @param polygons The input list of {@link MapPolygon}s.
      * @return The resulting list of {@link MapPolygonWithHoles}.
@@ -216,45 +244,302 @@ public class PolygonHelper
     {
         final List<MapPolygon> hulls = new ArrayList<>();
         final List<MapPolygon> holes = new ArrayList<>();
+        final long[] hullAreas = new long[polygons.size()];
 
         for (final MapPolygon polygon : polygons)
         {
-            if (isHole(polygon))
+            // Holes have CW point winding, assuming +X is "right" and +Z is "down".
+            final long area = signedArea(polygon);
+            if (area < 0)
             {
                 holes.add(polygon);
             }
             else
             {
+                hullAreas[hulls.size()] = area;
                 hulls.add(polygon);
             }
         }
 
-        final List<Tuple<MapPolygon, Area>> holeAreas = holes.stream()
-                .map(hole -> new Tuple<>(hole, toArea(hole)))
-                .collect(Collectors.toList());
-
-        final List<MapPolygonWithHoles> result = new ArrayList<>();
+        final List<List<MapPolygon>> hullHoles = new ArrayList<>(hulls.size());
+        final List<AABB> hullBounds = new ArrayList<>(hulls.size());
         for (final MapPolygon hull : hulls)
         {
-            final Area hullArea = toArea(hull);
-            final List<MapPolygon> hullHoles = new ArrayList<>();
+            hullHoles.add(new ArrayList<>());
+            hullBounds.add(hull.getBounds());
+        }
+
+        final BoundsTree tree = new BoundsTree(hullBounds);
+        final double[] point = new double[2];
+        final int[] best = new int[1];
+        final long[] bestArea = new long[1];
+        for (final MapPolygon hole : holes)
+        {
+            insidePoint(hole, point);
+            best[0] = -1;
+            bestArea[0] = Long.MAX_VALUE;
+            tree.query(point[0], point[1], index -> {
+                if (hullAreas[index] < bestArea[0] && contains(hulls.get(index), point[0], point[1]))
+                {
+                    best[0] = index;
+                    bestArea[0] = hullAreas[index];
+                }
+            });
+            if (best[0] != -1)
+            {
+                hullHoles.get(best[0]).add(hole);
+            }
+        }
+
+        final List<MapPolygonWithHoles> result = new ArrayList<>(hulls.size());
+        for (int i = 0; i < hulls.size(); ++i)
+        {
+            result.add(new MapPolygonWithHoles(hulls.get(i), hullHoles.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Whether the point (XZ block coords) is inside the polygon, using the even-odd rule.
+     * Points exactly on an edge may be reported either way.
+     *
+     * @param polygon The polygon.
+     * @param x       The x coordinate.
+     * @param z       The z coordinate.
+     * @return True if inside.
+     */
+    public static boolean contains(@Nonnull final MapPolygon polygon, final double x, final double z)
+    {
+        final AABB bounds = polygon.getBounds();
+        if (x < bounds.minX || x > bounds.maxX || z < bounds.minZ || z > bounds.maxZ)
+        {
+            return false;
+        }
 
-            for (final Iterator<Tuple<MapPolygon, Area>> iterator = holeAreas.iterator(); iterator.hasNext(); )
+        boolean inside = false;
+        int a = polygon.size() - 1;
+        for (int b = 0; b < polygon.size(); ++b)
+        {
+            final int ax = polygon.getX(a);
+            final int az = polygon.getZ(a);
+            final int bx = polygon.getX(b);
+            final int bz = polygon.getZ(b);
+            if ((bz > z) != (az > z) && x < (double) (ax - bx) * (z - bz) / (az - bz) + bx)
             {
-                final Tuple<MapPolygon, Area> holeArea = iterator.next();
-                final Area intersection = new Area(hullArea);
-                intersection.intersect(holeArea.getB());
-                if (!intersection.isEmpty())
+                inside = !inside;
+            }
+            a = b;
+        }
+        return inside;
+    }
+
+    /**
+     * Finds a point just inside a hole, next to the midpoint of its first edge.
+     * Holes use CW winding, so their interior is to the right of each edge.
+     */
+    private static void insidePoint(@Nonnull final MapPolygon hole, @Nonnull final double[] point)
+    {
+        final double dx = hole.getX(1) - hole.getX(0);
+        final double dz = hole.getZ(1) - hole.getZ(0);
+        final double offset = 1e-3 / Math.max(1e-9, Math.sqrt(dx * dx + dz * dz));
+        point[0] = (hole.getX(0) + hole.getX(1)) / 2.0 - dz * offset;
+        point[1] = (hole.getZ(0) + hole.getZ(1)) / 2.0 + dx * offset;
+    }
+
+    private static void appendToPath(@Nonnull final Path2D path, @Nonnull final MapPolygon polygon)
+    {
+        path.moveTo(polygon.getX(0), polygon.getZ(0));
+        for (int i = 1; i < polygon.size(); ++i)
+        {
+            path.lineTo(polygon.getX(i), polygon.getZ(i));
+        }
+        path.closePath();
+    }
+
+    /**
+     * Simplifies a polygon with the Douglas-Peucker algorithm, so that no removed point is further than
+     * the tolerance from the simplified outline.  Useful for drawing detailed polygons when zoomed out,
+     * where a tolerance of one pixel in blocks is invisible.
+     * <p>
+     * The polygon is treated as a closed ring and always keeps at least 3 points. If no points can be
+     * removed, the same instance is returned.
+     *
+     * @param polygon   The polygon.
+     * @param tolerance The maximum distance in blocks (XZ only) a removed point may be from the result.
+     * @return The simplified polygon, or the same polygon.
+     */
+    @Nonnull
+    public static MapPolygon simplify(@Nonnull final MapPolygon polygon, final double tolerance)
+    {
+        final int size = polygon.size();
+        if (size <= 3 || tolerance <= 0)
+        {
+            return polygon;
+        }
+
+        // Split the ring at the first point and the point furthest from it, then simplify each half
+        int far = 0;
+        long farDist = -1;
+        for (int i = 1; i < size; ++i)
+        {
+            final long dx = polygon.getX(i) - polygon.getX(0);
+            final long dz = polygon.getZ(i) - polygon.getZ(0);
+            if (dx * dx + dz * dz > farDist)
+            {
+                farDist = dx * dx + dz * dz;
+                far = i;
+            }
+        }
+
+        final boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[far] = true;
+        final double toleranceSq = tolerance * tolerance;
+        final int[] stack = new int[64];
+        int kept = 2 + douglasPeucker(polygon, 0, far, toleranceSq, keep, stack)
+                + douglasPeucker(polygon, far, size, toleranceSq, keep, stack);
+
+        if (kept < 3 || kept == size)
+        {
+            // Either nothing to remove, or the whole outline is within tolerance of a line
+            return polygon;
+        }
+
+        final int[] xs = new int[kept];
+        final int[] zs = new int[kept];
+        final AABB bounds = polygon.getBounds();
+        final List<BlockPos> points = bounds.minY == bounds.maxY ? null : new ArrayList<>(kept);
+        int index = 0;
+        for (int i = 0; i < size; ++i)
+        {
+            if (keep[i])
+            {
+                xs[index] = polygon.getX(i);
+                zs[index] = polygon.getZ(i);
+                if (points != null)
+                {
+                    points.add(new BlockPos(polygon.getX(i), polygon.getY(i), polygon.getZ(i)));
+                }
+                index++;
+            }
+        }
+        return points == null ? new MapPolygon(xs, zs, polygon.getY(0)) : new MapPolygon(points);
+    }
+
+    /**
+     * Marks the points to keep between the anchors first and last (exclusive), where last may equal the
+     * polygon size to mean the first point again.
+     *
+     * @return The number of points marked.
+     */
+    private static int douglasPeucker(@Nonnull final MapPolygon polygon, final int first, final int last,
+                                      final double toleranceSq, @Nonnull final boolean[] keep, @Nonnull int[] stack)
+    {
+        final int size = polygon.size();
+        int kept = 0;
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0)
+        {
+            final int end = stack[--top];
+            final int start = stack[--top];
+            final double ax = polygon.getX(start);
+            final double az = polygon.getZ(start);
+            final double bx = polygon.getX(end % size);
+            final double bz = polygon.getZ(end % size);
+
+            int worst = -1;
+            double worstDist = toleranceSq;
+            for (int i = start + 1; i < end; ++i)
+            {
+                final double dist = segmentDistanceSq(polygon.getX(i), polygon.getZ(i), ax, az, bx, bz);
+                if (dist > worstDist)
                 {
-                    hullHoles.add(holeArea.getA());
-                    iterator.remove();
+                    worst = i;
+                    worstDist = dist;
                 }
             }
 
-            result.add(new MapPolygonWithHoles(hull, hullHoles));
+            if (worst != -1)
+            {
+                keep[worst] = true;
+                kept++;
+                if (top + 4 > stack.length)
+                {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = start;
+                stack[top++] = worst;
+                stack[top++] = worst;
+                stack[top++] = end;
+            }
         }
+        return kept;
+    }
 
-        return result;
+    private static double segmentDistanceSq(final double px, final double pz, final double ax, final double az,
+                                            final double bx, final double bz)
+    {
+        final double dx = bx - ax;
+        final double dz = bz - az;
+        final double lengthSq = dx * dx + dz * dz;
+        double t = lengthSq == 0 ? 0 : ((px - ax) * dx + (pz - az) * dz) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        final double ex = ax + t * dx - px;
+        final double ez = az + t * dz - pz;
+        return ex * ex + ez * ez;
+    }
+
+    /**
+     * Triangulates a polygon and its holes by ear clipping, for filling it on the GPU.  Holes must be inside
+     * the hull and must not overlap each other; the winding of each ring doesn't matter.
+     * <p>
+     * This isn't cheap for large polygons, so cache the result, as {@link journeymap.client.api.display.PolygonOverlay#getMesh(int)} does.
+     *
+     * @param polygon The polygon and its holes.
+     * @return The triangles, with vertices relative to the hull's minimum corner.
+     */
+    @Nonnull
+    public static PolygonMesh triangulate(@Nonnull final MapPolygonWithHoles polygon)
+    {
+        final List<MapPolygon> holes = polygon.holes == null ? Collections.emptyList() : polygon.holes;
+        int vertexCount = polygon.hull.size();
+        final int[] holeStarts = new int[holes.size()];
+        for (int i = 0; i < holes.size(); ++i)
+        {
+            holeStarts[i] = vertexCount;
+            vertexCount += holes.get(i).size();
+        }
+
+        final AABB bounds = polygon.hull.getBounds();
+        final int originX = (int) bounds.minX;
+        final int originZ = (int) bounds.minZ;
+        final double[] coords = new double[vertexCount * 2];
+        int index = appendCoords(polygon.hull, originX, originZ, coords, 0);
+        for (final MapPolygon hole : holes)
+        {
+            index = appendCoords(hole, originX, originZ, coords, index);
+        }
+
+        final int[] indices = EarClipper.triangulate(coords, holeStarts, vertexCount);
+        final float[] vertices = new float[coords.length];
+        for (int i = 0; i < coords.length; ++i)
+        {
+            vertices[i] = (float) coords[i];
+        }
+        return new PolygonMesh(originX, originZ, vertices, indices);
+    }
+
+    private static int appendCoords(@Nonnull final MapPolygon polygon, final int originX, final int originZ,
+                                    @Nonnull final double[] coords, int index)
+    {
+        for (int i = 0; i < polygon.size(); ++i)
+        {
+            coords[index++] = polygon.getX(i) - originX;
+            coords[index++] = polygon.getZ(i) - originZ;
+        }
+        return index;
     }
 
     /**
@@ -298,23 +583,21 @@ public class PolygonHelper
     }
 
     /**
-     * Determine if the given polygon is a "hole".  Holes have CW point winding.
-     * Assumes that +X is "right" and +Z is "down".
+     * Twice the signed area of the polygon; negative for CW point winding.
      *
      * @param polygon The polygon.
-     * @return True if it's a hole.
+     * @return The signed area, doubled.
      */
-    private static boolean isHole(@Nonnull final MapPolygon polygon)
+    private static long signedArea(@Nonnull final MapPolygon polygon)
     {
         // from https://stackoverflow.com/a/18472899/43534
         long sum = 0;
-        final List<BlockPos> points = polygon.getPoints();
-        BlockPos a = points.get(points.size() - 1);
-        for (final BlockPos b : points)
+        int a = polygon.size() - 1;
+        for (int b = 0; b < polygon.size(); ++b)
         {
-            sum += (long) (b.getX() - a.getX()) * (b.getZ() + a.getZ());
+            sum += (long) (polygon.getX(b) - polygon.getX(a)) * (polygon.getZ(b) + polygon.getZ(a));
             a = b;
         }
-        return sum < 0;
+        return sum;
     }
 }
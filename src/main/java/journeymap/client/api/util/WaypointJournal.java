@@ -0,0 +1,474 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import journeymap.client.api.display.Waypoint;
+import journeymap.client.api.display.WaypointGroup;
+import journeymap.client.api.event.WaypointEvent;
+import journeymap.client.api.model.WaypointCodec;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Saves waypoints to a single file incrementally, so that saving after one edit appends one record rather than
+ * rewriting every waypoint.
+ * <p>
+ * The file holds a snapshot of all waypoints in the {@link WaypointCodec} form, followed by an append-only journal of
+ * changes keyed by {@link Waypoint#getGuid()}: an update record holds the whole waypoint, and a delete record just
+ * its GUID.  Changes are queued by {@link #onWaypointEvent}, {@link #update} and {@link #delete}, and {@link #flush}
+ * also picks up any tracked waypoint which {@link Waypoint#isDirty()}, then clears the flag.  Several changes to
+ * the same waypoint between flushes are written as one record.
+ * <p>
+ * Once the journal has more records than there are waypoints, {@link #flush} compacts the file by writing a new
+ * snapshot to a temporary file and moving it into place, so a crash leaves either the old file or the new one.
+ * Each record has a checksum, and a partly written record at the end of the file is discarded on {@link #open}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class WaypointJournal implements Closeable
+{
+    /**
+     * First four bytes of a journal file: "JMWJ".
+     */
+    public static final int MAGIC = 0x4A4D574A;
+
+    /**
+     * Version of the file layout.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final byte UPDATE = 1;
+    private static final byte DELETE = 2;
+
+    // Don't bother compacting small files
+    private static final int MIN_COMPACT_RECORDS = 256;
+
+    private final Path file;
+    private final Map<String, Waypoint> waypoints = new LinkedHashMap<>();
+
+    // Changes not yet written, in order; a null value is a delete
+    private final Map<String, Waypoint> pending = new LinkedHashMap<>();
+    private FileChannel channel;
+    private int journalRecords;
+
+    /**
+     * Constructor.  Nothing is read until {@link #open()}.
+     *
+     * @param file the journal file
+     */
+    public WaypointJournal(Path file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Reads the file, replaying the journal over the snapshot, and opens it for appending.  If the file doesn't
+     * exist, an empty one is created.  Waypoints in the same group share one {@link WaypointGroup}, as last saved.
+     *
+     * @return the saved waypoints, which are tracked from now on
+     * @throws IOException if the file can't be read or isn't a journal
+     */
+    public synchronized List<Waypoint> open() throws IOException
+    {
+        if (channel != null)
+        {
+            throw new IllegalStateException("Waypoint journal already open");
+        }
+        waypoints.clear();
+        pending.clear();
+        journalRecords = 0;
+
+        if (!Files.exists(file))
+        {
+            writeSnapshot(file);
+        }
+
+        final long validLength;
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            validLength = read(in, Files.size(file));
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        if (channel.size() > validLength)
+        {
+            // Drop a record which was only partly written
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        return new ArrayList<>(waypoints.values());
+    }
+
+    /**
+     * Queues a change reported by an event.  Read events are ignored.
+     *
+     * @param event the event
+     */
+    public synchronized void onWaypointEvent(WaypointEvent event)
+    {
+        switch (event.getContext())
+        {
+            case CREATE:
+            case UPDATE:
+                update(event.getWaypoint());
+                break;
+
+            case DELETED:
+                delete(event.getWaypoint());
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Queues a new or changed waypoint to be saved, and tracks it from now on.
+     *
+     * @param waypoint the waypoint
+     */
+    public synchronized void update(Waypoint waypoint)
+    {
+        waypoints.put(waypoint.getGuid(), waypoint);
+        pending.put(waypoint.getGuid(), waypoint);
+    }
+
+    /**
+     * Queues a waypoint to be deleted, and stops tracking it.
+     *
+     * @param waypoint the waypoint
+     */
+    public synchronized void delete(Waypoint waypoint)
+    {
+        if (waypoints.remove(waypoint.getGuid()) != null || pending.containsKey(waypoint.getGuid()))
+        {
+            pending.put(waypoint.getGuid(), null);
+        }
+    }
+
+    /**
+     * Appends the queued changes and any dirty tracked waypoints to the journal, then compacts the file if the
+     * journal has grown larger than the snapshot would be.
+     *
+     * @return the number of records written
+     * @throws IOException if the file can't be written
+     */
+    public synchronized int flush() throws IOException
+    {
+        checkOpen();
+        for (final Waypoint waypoint : waypoints.values())
+        {
+            if (waypoint.isDirty())
+            {
+                pending.putIfAbsent(waypoint.getGuid(), waypoint);
+            }
+        }
+        if (pending.isEmpty())
+        {
+            return 0;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final CRC32 crc = new CRC32();
+        for (final Map.Entry<String, Waypoint> change : pending.entrySet())
+        {
+            final byte[] payload;
+            if (change.getValue() == null)
+            {
+                payload = change.getKey().getBytes(StandardCharsets.UTF_8);
+            }
+            else
+            {
+                final ByteArrayOutputStream encoded = new ByteArrayOutputStream(128);
+                WaypointCodec.write(encoded, Collections.singletonList(change.getValue()));
+                payload = encoded.toByteArray();
+            }
+            crc.reset();
+            crc.update(payload);
+            out.writeByte(change.getValue() == null ? DELETE : UPDATE);
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        channel.force(false);
+
+        final int written = pending.size();
+        for (final Waypoint waypoint : pending.values())
+        {
+            if (waypoint != null)
+            {
+                waypoint.setDirty(false);
+            }
+        }
+        pending.clear();
+        journalRecords += written;
+
+        if (journalRecords >= Math.max(MIN_COMPACT_RECORDS, waypoints.size()))
+        {
+            compact();
+        }
+        return written;
+    }
+
+    /**
+     * Rewrites the file as a snapshot of the tracked waypoints, with an empty journal.  Queued changes are
+     * included, and dirty flags are cleared.
+     *
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void compact() throws IOException
+    {
+        checkOpen();
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        writeSnapshot(temp);
+
+        // The file can't be replaced while open on some platforms
+        channel.close();
+        try
+        {
+            try
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+
+        for (final Waypoint waypoint : waypoints.values())
+        {
+            waypoint.setDirty(false);
+        }
+        pending.clear();
+        journalRecords = 0;
+    }
+
+    /**
+     * Number of records in the journal since the last snapshot.
+     *
+     * @return the count
+     */
+    public synchronized int getJournalRecords()
+    {
+        return journalRecords;
+    }
+
+    /**
+     * Number of tracked waypoints.
+     *
+     * @return the count
+     */
+    public synchronized int size()
+    {
+        return waypoints.size();
+    }
+
+    /**
+     * Flushes any changes and closes the file.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (channel != null)
+        {
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshot and then the journal.
+     *
+     * @return the length of the file up to the end of the last complete record
+     */
+    private long read(CountingInputStream in, long fileLength) throws IOException
+    {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC)
+        {
+            throw new IOException("Not a waypoint journal: " + file);
+        }
+        final int formatVersion = data.readInt();
+        if (formatVersion > FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported waypoint journal version " + formatVersion + ": " + file);
+        }
+        final long snapshotLength = data.readLong();
+
+        // Each journal record has its own copy of its group, so keep the last one saved for all its waypoints
+        final Map<String, WaypointGroup> groups = new HashMap<>();
+        final InputStream snapshot = ByteStreams.limit(in, snapshotLength);
+        for (final Waypoint waypoint : WaypointCodec.read(snapshot))
+        {
+            put(waypoint, groups);
+        }
+        ByteStreams.exhaust(snapshot);
+        if (in.getCount() != HEADER_SIZE + snapshotLength)
+        {
+            throw new EOFException("Waypoint journal snapshot truncated: " + file);
+        }
+
+        long validLength = in.getCount();
+        final CRC32 crc = new CRC32();
+        while (true)
+        {
+            final int type = data.read();
+            if (type < 0)
+            {
+                break;
+            }
+            final byte[] payload;
+            final int checksum;
+            try
+            {
+                final int length = data.readInt();
+                if (length < 0 || length > fileLength - in.getCount())
+                {
+                    break;
+                }
+                payload = new byte[length];
+                checksum = data.readInt();
+                data.readFully(payload);
+            }
+            catch (EOFException e)
+            {
+                break;
+            }
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum)
+            {
+                break;
+            }
+
+            if (type == UPDATE)
+            {
+                for (final Waypoint waypoint : WaypointCodec.read(new ByteArrayInputStream(payload)))
+                {
+                    put(waypoint, groups);
+                }
+            }
+            else if (type == DELETE)
+            {
+                waypoints.remove(new String(payload, StandardCharsets.UTF_8));
+            }
+            journalRecords++;
+            validLength = in.getCount();
+        }
+
+        for (final Waypoint waypoint : waypoints.values())
+        {
+            final WaypointGroup group = waypoint.getGroup();
+            if (group != null && groups.get(group.getGuid()) != group)
+            {
+                waypoint.setGroup(groups.get(group.getGuid())).setDirty(false);
+            }
+        }
+        return validLength;
+    }
+
+    private void put(Waypoint waypoint, Map<String, WaypointGroup> groups)
+    {
+        waypoints.put(waypoint.getGuid(), waypoint);
+        if (waypoint.getGroup() != null)
+        {
+            groups.put(waypoint.getGroup().getGuid(), waypoint.getGroup());
+        }
+    }
+
+    /**
+     * Writes a file with a snapshot of the tracked waypoints and an empty journal.
+     */
+    private void writeSnapshot(Path path) throws IOException
+    {
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        WaypointCodec.write(snapshot, waypoints.values());
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(snapshot.size()).flip();
+            final ByteBuffer body = ByteBuffer.wrap(snapshot.toByteArray());
+            while (header.hasRemaining() || body.hasRemaining())
+            {
+                out.write(new ByteBuffer[]{header, body});
+            }
+            out.force(true);
+        }
+    }
+
+    private void checkOpen()
+    {
+        if (channel == null)
+        {
+            throw new IllegalStateException("Waypoint journal not open");
+        }
+    }
+}
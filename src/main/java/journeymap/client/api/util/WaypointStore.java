@@ -0,0 +1,520 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.collect.ImmutableList;
+import journeymap.client.api.display.DisplayType;
+import journeymap.client.api.display.Displayable;
+import journeymap.client.api.display.Waypoint;
+import journeymap.client.api.display.WaypointGroup;
+import journeymap.client.api.model.DimensionKey;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * An indexed set of {@link Waypoint}s, with secondary indexes by dimension, mod id and {@link WaypointGroup}.
+ * <p>
+ * The getters return immutable snapshots which are cached until the set of waypoints they cover changes, so
+ * polling an unchanged index costs nothing, and rebuilding one costs O(result) rather than a scan of every
+ * waypoint.  {@link #getVersion()} increases on every change, for callers which want to skip their own work too.
+ * <p>
+ * {@link #getNearest} and {@link #getWithinRadius} find waypoints by distance using a 2-d tree per dimension,
+ * which is built on first use after that dimension's waypoints change.
+ * <p>
+ * Waypoints are copied when they are added, with {@link Waypoint#Waypoint(Waypoint)}, and the getters return the
+ * copies.  Changing a waypoint which has been added doesn't change the store until it is added again, and changing
+ * a copy doesn't change the original.  The copies are shared by every snapshot which holds them, so they shouldn't
+ * be changed either.  Waypoints are identified by {@link Waypoint#getGuid()}.
+ * <p>
+ * This class is thread-safe.  Snapshots can be kept and read from any thread.
+ */
+public class WaypointStore
+{
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Bucket all = new Bucket();
+    private final Map<DimensionKey, Bucket> byDimension = new HashMap<>();
+    private final Map<String, Bucket> byModId = new HashMap<>();
+    private final Map<WaypointGroup, Bucket> byGroup = new HashMap<>();
+    private long version;
+
+    /**
+     * Adds a copy of a waypoint, replacing any previously added waypoint with the same GUID.
+     *
+     * @param waypoint the waypoint
+     */
+    public synchronized void add(Waypoint waypoint)
+    {
+        removeEntry(waypoint.getGuid());
+
+        final Entry entry = new Entry(waypoint);
+        entries.put(waypoint.getGuid(), entry);
+        all.put(entry);
+        byModId.computeIfAbsent(entry.modId, key -> new Bucket()).put(entry);
+        if (entry.dimension != null)
+        {
+            byDimension.computeIfAbsent(entry.dimension, key -> new Bucket()).put(entry);
+        }
+        if (entry.group != null)
+        {
+            byGroup.computeIfAbsent(entry.group, key -> new Bucket()).put(entry);
+        }
+        version++;
+    }
+
+    /**
+     * Removes a waypoint.
+     *
+     * @param waypoint the waypoint
+     * @return true if it was present
+     */
+    public synchronized boolean remove(Waypoint waypoint)
+    {
+        if (removeEntry(waypoint.getGuid()))
+        {
+            version++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes every waypoint which matches the filter.
+     *
+     * @param filter the filter
+     * @return true if any were removed
+     */
+    public synchronized boolean removeIf(Predicate<Waypoint> filter)
+    {
+        boolean removed = false;
+        for (final Waypoint waypoint : all.snapshot())
+        {
+            if (filter.test(waypoint))
+            {
+                removed |= removeEntry(waypoint.getGuid());
+            }
+        }
+        if (removed)
+        {
+            version++;
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all waypoints.
+     */
+    public synchronized void clear()
+    {
+        if (!entries.isEmpty())
+        {
+            entries.clear();
+            all.clear();
+            byDimension.clear();
+            byModId.clear();
+            byGroup.clear();
+            version++;
+        }
+    }
+
+    /**
+     * Gets a waypoint by id.
+     *
+     * @param modId     the mod id
+     * @param displayId the display id
+     * @return the waypoint, or null if not present
+     */
+    @Nullable
+    public synchronized Waypoint get(String modId, String displayId)
+    {
+        final Entry entry = entries.get(Displayable.createGuid(modId, DisplayType.Waypoint, displayId));
+        return entry == null ? null : entry.waypoint;
+    }
+
+    /**
+     * Whether a waypoint with the same GUID is present.
+     *
+     * @param waypoint the waypoint
+     * @return true if present
+     */
+    public synchronized boolean contains(Waypoint waypoint)
+    {
+        return entries.containsKey(waypoint.getGuid());
+    }
+
+    /**
+     * Number of waypoints.
+     *
+     * @return the size
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * A counter which increases every time the store changes.
+     *
+     * @return the version
+     */
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Gets all waypoints, in the order they were added.
+     *
+     * @return an immutable snapshot
+     */
+    public synchronized List<Waypoint> getAll()
+    {
+        return all.snapshot();
+    }
+
+    /**
+     * Gets the waypoints in a dimension.
+     *
+     * @param dimension the dimension
+     * @return an immutable snapshot
+     */
+    public List<Waypoint> getAll(ResourceKey<Level> dimension)
+    {
+        return getAll(DimensionKey.of(dimension));
+    }
+
+    /**
+     * Gets the waypoints in a dimension.
+     *
+     * @param dimension the dimension name, as per {@link Waypoint#getDimension()}
+     * @return an immutable snapshot
+     */
+    public List<Waypoint> getAll(String dimension)
+    {
+        return getAll(DimensionKey.of(dimension));
+    }
+
+    /**
+     * Gets the waypoints in a dimension.
+     *
+     * @param dimension the dimension
+     * @return an immutable snapshot
+     */
+    public synchronized List<Waypoint> getAll(DimensionKey dimension)
+    {
+        return snapshot(byDimension.get(dimension));
+    }
+
+    /**
+     * Gets the waypoints added by a mod.
+     *
+     * @param modId the mod id
+     * @return an immutable snapshot
+     */
+    public synchronized List<Waypoint> getByModId(String modId)
+    {
+        return snapshot(byModId.get(modId));
+    }
+
+    /**
+     * Gets the waypoints in a group.
+     *
+     * @param group the group
+     * @return an immutable snapshot
+     */
+    public synchronized List<Waypoint> getByGroup(WaypointGroup group)
+    {
+        return snapshot(byGroup.get(group));
+    }
+
+    /**
+     * Gets the waypoints displayed in a dimension nearest to a position in it, nearest first.  Waypoints from other
+     * dimensions are included if displayed, with positions converted as by {@link Waypoint#getPosition(String)}.
+     *
+     * @param dimension the dimension
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param count     the maximum number of waypoints to return
+     * @return the nearest waypoints
+     */
+    public List<Waypoint> getNearest(ResourceKey<Level> dimension, double x, double y, double z, int count)
+    {
+        return getNearest(DimensionKey.of(dimension), x, y, z, count);
+    }
+
+    /**
+     * Gets the waypoints displayed in a dimension nearest to a position in it, nearest first.  Waypoints from other
+     * dimensions are included if displayed, with positions converted as by {@link Waypoint#getPosition(String)}.
+     *
+     * @param dimension the dimension name, as per {@link Waypoint#getDimension()}
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param count     the maximum number of waypoints to return
+     * @return the nearest waypoints
+     */
+    public List<Waypoint> getNearest(String dimension, double x, double y, double z, int count)
+    {
+        return getNearest(DimensionKey.of(dimension), x, y, z, count);
+    }
+
+    /**
+     * Gets the waypoints displayed in a dimension nearest to a position in it, nearest first.  Waypoints from other
+     * dimensions are included if displayed, with positions converted as by {@link Waypoint#getPosition(String)}.
+     *
+     * @param dimension the dimension
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param count     the maximum number of waypoints to return
+     * @return the nearest waypoints
+     */
+    public synchronized List<Waypoint> getNearest(DimensionKey dimension, double x, double y, double z, int count)
+    {
+        if (count <= 0 || entries.isEmpty())
+        {
+            return new ArrayList<>(0);
+        }
+        final WaypointTree.Nearest nearest = new WaypointTree.Nearest(Math.min(count, entries.size()));
+
+        // Search the dimension itself first, since it usually has the nearest waypoints and prunes the rest
+        final Bucket own = byDimension.get(dimension);
+        if (own != null && own.tree().isDisplayedIn(dimension))
+        {
+            own.tree().nearest(WaypointTree.SAME_SCALE, dimension, x, y, z, nearest);
+        }
+        for (final Map.Entry<DimensionKey, Bucket> bucket : byDimension.entrySet())
+        {
+            final WaypointTree tree = bucket.getValue().tree();
+            if (bucket.getValue() != own && tree.isDisplayedIn(dimension))
+            {
+                tree.nearest(WaypointTree.scaleMode(bucket.getKey(), dimension), dimension, x, y, z, nearest);
+            }
+        }
+        return nearest.drain();
+    }
+
+    /**
+     * Gets the waypoints displayed in a dimension within a distance of a position in it, in no particular order.
+     * Waypoints from other dimensions are included if displayed, with positions converted as by
+     * {@link Waypoint#getPosition(String)}.
+     *
+     * @param dimension the dimension
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param radius    the distance in blocks
+     * @return the waypoints within the radius
+     */
+    public List<Waypoint> getWithinRadius(ResourceKey<Level> dimension, double x, double y, double z, double radius)
+    {
+        return getWithinRadius(DimensionKey.of(dimension), x, y, z, radius);
+    }
+
+    /**
+     * Gets the waypoints displayed in a dimension within a distance of a position in it, in no particular order.
+     * Waypoints from other dimensions are included if displayed, with positions converted as by
+     * {@link Waypoint#getPosition(String)}.
+     *
+     * @param dimension the dimension name, as per {@link Waypoint#getDimension()}
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param radius    the distance in blocks
+     * @return the waypoints within the radius
+     */
+    public List<Waypoint> getWithinRadius(String dimension, double x, double y, double z, double radius)
+    {
+        return getWithinRadius(DimensionKey.of(dimension), x, y, z, radius);
+    }
+
+    /**
+     * Gets the waypoints displayed in a dimension within a distance of a position in it, in no particular order.
+     * Waypoints from other dimensions are included if displayed, with positions converted as by
+     * {@link Waypoint#getPosition(String)}.
+     *
+     * @param dimension the dimension
+     * @param x         x coord
+     * @param y         y coord
+     * @param z         z coord
+     * @param radius    the distance in blocks
+     * @return the waypoints within the radius
+     */
+    public synchronized List<Waypoint> getWithinRadius(DimensionKey dimension, double x, double y, double z, double radius)
+    {
+        final List<Waypoint> result = new ArrayList<>();
+        if (radius < 0)
+        {
+            return result;
+        }
+        for (final Map.Entry<DimensionKey, Bucket> bucket : byDimension.entrySet())
+        {
+            final WaypointTree tree = bucket.getValue().tree();
+            if (tree.isDisplayedIn(dimension))
+            {
+                tree.withinRadius(WaypointTree.scaleMode(bucket.getKey(), dimension), dimension, x, y, z, radius, result);
+            }
+        }
+        return result;
+    }
+
+    private static List<Waypoint> snapshot(@Nullable Bucket bucket)
+    {
+        return bucket == null ? ImmutableList.of() : bucket.snapshot();
+    }
+
+    private boolean removeEntry(String guid)
+    {
+        final Entry entry = entries.remove(guid);
+        if (entry == null)
+        {
+            return false;
+        }
+        all.remove(guid);
+        removeFrom(byModId, entry.modId, guid);
+        if (entry.dimension != null)
+        {
+            removeFrom(byDimension, entry.dimension, guid);
+        }
+        if (entry.group != null)
+        {
+            removeFrom(byGroup, entry.group, guid);
+        }
+        return true;
+    }
+
+    private static <K> void removeFrom(Map<K, Bucket> index, K key, String guid)
+    {
+        final Bucket bucket = index.get(key);
+        if (bucket != null)
+        {
+            bucket.remove(guid);
+            if (bucket.members.isEmpty())
+            {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * A waypoint and the index keys, position and display dimensions it was added with.
+     */
+    private static class Entry
+    {
+        final Waypoint waypoint;
+        final String modId;
+        final DimensionKey dimension;
+        final WaypointGroup group;
+        final BlockPos pos;
+        final long[] displayBits;
+
+        Entry(Waypoint original)
+        {
+            this.waypoint = new Waypoint(original);
+            this.modId = waypoint.getModId();
+            this.dimension = waypoint.getDimension() == null ? null : waypoint.getDimensionKey();
+            this.group = waypoint.getGroup();
+            this.pos = waypoint.getPosition();
+            this.displayBits = waypoint.getDisplayDimensionBits();
+        }
+    }
+
+    /**
+     * The waypoints under one index key, with a snapshot and a tree which are rebuilt on demand after a change.
+     */
+    private static class Bucket
+    {
+        final Map<String, Entry> members = new LinkedHashMap<>();
+        ImmutableList<Waypoint> snapshot;
+        WaypointTree tree;
+
+        void put(Entry entry)
+        {
+            members.put(entry.waypoint.getGuid(), entry);
+            snapshot = null;
+            tree = null;
+        }
+
+        void remove(String guid)
+        {
+            if (members.remove(guid) != null)
+            {
+                snapshot = null;
+                tree = null;
+            }
+        }
+
+        void clear()
+        {
+            members.clear();
+            snapshot = null;
+            tree = null;
+        }
+
+        ImmutableList<Waypoint> snapshot()
+        {
+            if (snapshot == null)
+            {
+                final ImmutableList.Builder<Waypoint> builder = ImmutableList.builderWithExpectedSize(members.size());
+                for (final Entry entry : members.values())
+                {
+                    builder.add(entry.waypoint);
+                }
+                snapshot = builder.build();
+            }
+            return snapshot;
+        }
+
+        WaypointTree tree()
+        {
+            if (tree == null)
+            {
+                final int size = members.size();
+                final Waypoint[] waypoints = new Waypoint[size];
+                final int[] xs = new int[size];
+                final int[] ys = new int[size];
+                final int[] zs = new int[size];
+                final long[][] displayBits = new long[size][];
+                int index = 0;
+                for (final Entry entry : members.values())
+                {
+                    waypoints[index] = entry.waypoint;
+                    xs[index] = entry.pos.getX();
+                    ys[index] = entry.pos.getY();
+                    zs[index] = entry.pos.getZ();
+                    displayBits[index] = entry.displayBits;
+                    index++;
+                }
+                tree = new WaypointTree(waypoints, xs, ys, zs, displayBits);
+            }
+            return tree;
+        }
+    }
+}
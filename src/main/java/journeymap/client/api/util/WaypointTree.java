@@ -0,0 +1,383 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.Waypoint;
+import journeymap.client.api.model.DimensionKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A static 2-d tree of waypoints in one dimension, split alternately on x and z, for nearest-neighbour and radius
+ * queries from any dimension.
+ * <p>
+ * Positions are converted to the target dimension the same way as {@link Waypoint#getPosition(String)}: 8x
+ * horizontally out of the Nether, and 1/8 (rounded down) into it.  Both conversions preserve order, so a split
+ * plane converted to the target dimension still separates the converted points, and pruning stays exact.
+ */
+final class WaypointTree
+{
+    static final int SAME_SCALE = 0;
+    static final int FROM_NETHER = 1;
+    static final int TO_NETHER = 2;
+
+    // Entries in tree order: the median of each range [lo, hi) is the node, with lower coords before it
+    private final Waypoint[] waypoints;
+    private final long[][] displayBits;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] zs;
+    private long[] displayedIn = new long[0];
+
+    /**
+     * Constructor.
+     *
+     * @param waypoints   the waypoints
+     * @param xs          native x of each waypoint
+     * @param ys          native y of each waypoint
+     * @param zs          native z of each waypoint
+     * @param displayBits display dimensions of each waypoint, as per {@link DimensionKey#toBits(String[])}
+     */
+    WaypointTree(Waypoint[] waypoints, int[] xs, int[] ys, int[] zs, long[][] displayBits)
+    {
+        this.waypoints = waypoints;
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.displayBits = displayBits;
+        for (final long[] bits : displayBits)
+        {
+            if (bits.length > displayedIn.length)
+            {
+                displayedIn = Arrays.copyOf(displayedIn, bits.length);
+            }
+            for (int word = 0; word < bits.length; word++)
+            {
+                displayedIn[word] |= bits[word];
+            }
+        }
+        build(0, waypoints.length, 0);
+    }
+
+    /**
+     * Whether any waypoint is displayed in the target dimension.  If not, there's no need to search.
+     */
+    boolean isDisplayedIn(DimensionKey targetDimension)
+    {
+        return targetDimension.isIn(displayedIn);
+    }
+
+    /**
+     * Conversion from a waypoint's dimension to the target dimension, as in {@link Waypoint#getPosition(String)}.
+     */
+    static int scaleMode(DimensionKey waypointDimension, DimensionKey targetDimension)
+    {
+        if (waypointDimension == targetDimension)
+        {
+            return SAME_SCALE;
+        }
+        if (waypointDimension == DimensionKey.NETHER)
+        {
+            return FROM_NETHER;
+        }
+        if (targetDimension == DimensionKey.NETHER)
+        {
+            return TO_NETHER;
+        }
+        return SAME_SCALE;
+    }
+
+    /**
+     * Adds the waypoints displayed in the target dimension to the nearest set, if they are near enough.
+     */
+    void nearest(int mode, DimensionKey targetDimension, double x, double y, double z, Nearest nearest)
+    {
+        nearest(0, waypoints.length, 0, mode, targetDimension, x, y, z, nearest);
+    }
+
+    /**
+     * Adds the waypoints displayed in the target dimension within the radius to the result, in no particular order.
+     */
+    void withinRadius(int mode, DimensionKey targetDimension, double x, double y, double z, double radius, List<Waypoint> result)
+    {
+        withinRadius(0, waypoints.length, 0, mode, targetDimension, x, y, z, radius * radius, result);
+    }
+
+    private void nearest(int lo, int hi, int depth, int mode, DimensionKey target, double x, double y, double z, Nearest nearest)
+    {
+        if (lo >= hi)
+        {
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        if (isDisplayed(mid, target))
+        {
+            nearest.offer(waypoints[mid], distanceSq(mid, mode, x, y, z));
+        }
+
+        final double diff = (depth & 1) == 0 ? x - scale(xs[mid], mode) : z - scale(zs[mid], mode);
+        if (diff < 0)
+        {
+            nearest(lo, mid, depth + 1, mode, target, x, y, z, nearest);
+            if (diff * diff < nearest.worstDistanceSq())
+            {
+                nearest(mid + 1, hi, depth + 1, mode, target, x, y, z, nearest);
+            }
+        }
+        else
+        {
+            nearest(mid + 1, hi, depth + 1, mode, target, x, y, z, nearest);
+            if (diff * diff < nearest.worstDistanceSq())
+            {
+                nearest(lo, mid, depth + 1, mode, target, x, y, z, nearest);
+            }
+        }
+    }
+
+    private void withinRadius(int lo, int hi, int depth, int mode, DimensionKey target, double x, double y, double z,
+                              double radiusSq, List<Waypoint> result)
+    {
+        if (lo >= hi)
+        {
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        if (isDisplayed(mid, target) && distanceSq(mid, mode, x, y, z) <= radiusSq)
+        {
+            result.add(waypoints[mid]);
+        }
+
+        final double diff = (depth & 1) == 0 ? x - scale(xs[mid], mode) : z - scale(zs[mid], mode);
+        if (diff <= 0 || diff * diff <= radiusSq)
+        {
+            withinRadius(lo, mid, depth + 1, mode, target, x, y, z, radiusSq, result);
+        }
+        if (diff >= 0 || diff * diff <= radiusSq)
+        {
+            withinRadius(mid + 1, hi, depth + 1, mode, target, x, y, z, radiusSq, result);
+        }
+    }
+
+    private boolean isDisplayed(int index, DimensionKey target)
+    {
+        return target.isIn(displayBits[index]);
+    }
+
+    private double distanceSq(int index, int mode, double x, double y, double z)
+    {
+        final double dx = scale(xs[index], mode) - x;
+        final double dy = ys[index] - y;
+        final double dz = scale(zs[index], mode) - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double scale(int coord, int mode)
+    {
+        switch (mode)
+        {
+            case FROM_NETHER:
+                return coord * 8.0;
+            case TO_NETHER:
+                // Same as flooring coord / 8.0
+                return coord >> 3;
+            default:
+                return coord;
+        }
+    }
+
+    private void build(int lo, int hi, int depth)
+    {
+        if (hi - lo <= 1)
+        {
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, (depth & 1) == 0 ? xs : zs);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Quickselect: reorders [left, right] so that the k-th entry is in place, with no greater keys before it
+     * and no lesser keys after it.
+     */
+    private void select(int left, int right, int k, int[] keys)
+    {
+        while (right > left)
+        {
+            final int pivot = keys[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j)
+            {
+                while (keys[i] < pivot)
+                {
+                    i++;
+                }
+                while (keys[j] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j)
+            {
+                right = j;
+            }
+            else if (k >= i)
+            {
+                left = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b)
+    {
+        final Waypoint waypoint = waypoints[a];
+        waypoints[a] = waypoints[b];
+        waypoints[b] = waypoint;
+        final long[] bits = displayBits[a];
+        displayBits[a] = displayBits[b];
+        displayBits[b] = bits;
+        swap(xs, a, b);
+        swap(ys, a, b);
+        swap(zs, a, b);
+    }
+
+    private static void swap(int[] array, int a, int b)
+    {
+        final int value = array[a];
+        array[a] = array[b];
+        array[b] = value;
+    }
+
+    /**
+     * The k nearest waypoints found so far, as a max-heap on distance.
+     */
+    static final class Nearest
+    {
+        private final Waypoint[] heap;
+        private final double[] distances;
+        private int size;
+
+        Nearest(int count)
+        {
+            heap = new Waypoint[count];
+            distances = new double[count];
+        }
+
+        /**
+         * The distance a waypoint must beat to be added.
+         */
+        double worstDistanceSq()
+        {
+            return size < heap.length ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(Waypoint waypoint, double distanceSq)
+        {
+            if (size < heap.length)
+            {
+                // Sift up
+                int child = size++;
+                while (child > 0)
+                {
+                    final int parent = (child - 1) >> 1;
+                    if (distances[parent] >= distanceSq)
+                    {
+                        break;
+                    }
+                    heap[child] = heap[parent];
+                    distances[child] = distances[parent];
+                    child = parent;
+                }
+                heap[child] = waypoint;
+                distances[child] = distanceSq;
+            }
+            else if (distanceSq < distances[0])
+            {
+                siftDown(waypoint, distanceSq, size);
+            }
+        }
+
+        private void siftDown(Waypoint waypoint, double distanceSq, int length)
+        {
+            int parent = 0;
+            while (true)
+            {
+                int child = parent * 2 + 1;
+                if (child >= length)
+                {
+                    break;
+                }
+                if (child + 1 < length && distances[child + 1] > distances[child])
+                {
+                    child++;
+                }
+                if (distances[child] <= distanceSq)
+                {
+                    break;
+                }
+                heap[parent] = heap[child];
+                distances[parent] = distances[child];
+                parent = child;
+            }
+            heap[parent] = waypoint;
+            distances[parent] = distanceSq;
+        }
+
+        /**
+         * Empties the heap into a list, nearest first.
+         */
+        List<Waypoint> drain()
+        {
+            final Waypoint[] sorted = new Waypoint[size];
+            for (int end = size - 1; end >= 0; end--)
+            {
+                sorted[end] = heap[0];
+                // Move the last element to the root and restore the heap over the remaining elements
+                final Waypoint last = heap[end];
+                final double lastDistance = distances[end];
+                heap[end] = null;
+                if (end > 0)
+                {
+                    siftDown(last, lastDistance, end);
+                }
+            }
+            size = 0;
+            final List<Waypoint> result = new ArrayList<>(sorted.length);
+            for (final Waypoint waypoint : sorted)
+            {
+                result.add(waypoint);
+            }
+            return result;
+        }
+    }
+}
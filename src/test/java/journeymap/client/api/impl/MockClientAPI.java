@@ -25,12 +25,20 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.LinkedHashMultimap;
 import com.mojang.blaze3d.platform.NativeImage;
+import journeymap.client.api.IClientPlugin;
 import journeymap.client.api.display.Context;
 import journeymap.client.api.display.DisplayType;
 import journeymap.client.api.display.Displayable;
+import journeymap.client.api.display.Overlay;
 import journeymap.client.api.display.Waypoint;
 import journeymap.client.api.event.ClientEvent;
+import journeymap.client.api.event.EventCoalescing;
+import journeymap.client.api.event.EventDelivery;
+import journeymap.client.api.util.ClientEventDispatcher;
+import journeymap.client.api.util.EventTimings;
+import journeymap.client.api.util.OverlayIndex;
 import journeymap.client.api.util.UIState;
+import journeymap.client.api.util.WaypointStore;
 import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceKey;
@@ -46,6 +54,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Random;
@@ -75,6 +84,23 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
                         }
                     });
 
+    // Overlays are also spatially indexed by modId so getOverlays() can be exercised
+    private final LoadingCache<String, OverlayIndex> modOverlays =
+            CacheBuilder.newBuilder().build(
+                    new CacheLoader<String, OverlayIndex>()
+                    {
+                        public OverlayIndex load(String key)
+                        {
+                            return new OverlayIndex();
+                        }
+                    });
+
+    // Waypoints are kept in a store so the waypoint getters return something
+    private final WaypointStore waypoints = new WaypointStore();
+
+    // Delivers events only to the plugins subscribed to them
+    private final ClientEventDispatcher events = new ClientEventDispatcher();
+
 
     @Override
     public UIState getUIState(Context.UI ui)
@@ -94,12 +120,63 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
     @Override
     public void subscribe(String modId, EnumSet<ClientEvent.Type> eventTypes)
     {
-        // Not implemented
+        events.subscribe(modId, eventTypes);
+        log(String.format("Subscribed %s to %s", modId, eventTypes));
+    }
+
+    @Override
+    public void subscribe(String modId, EnumSet<ClientEvent.Type> eventTypes, @Nullable EventCoalescing coalescing)
+    {
+        events.subscribe(modId, eventTypes, coalescing);
+        log(String.format("Subscribed %s to %s with %s", modId, eventTypes, coalescing));
+    }
+
+    @Override
+    public void setEventDelivery(String modId, @Nullable EventDelivery delivery)
+    {
+        events.setDelivery(modId, delivery);
+        log(String.format("Set event delivery for %s to %s", modId, delivery));
+    }
+
+    @Override
+    public EventTimings getEventTimings()
+    {
+        return events.getTimings();
+    }
+
+    /**
+     * Registers a plugin to receive the events it subscribes to, as JourneyMap does for each plugin it loads.
+     *
+     * @param plugin the plugin
+     */
+    void register(IClientPlugin plugin)
+    {
+        events.register(plugin);
+    }
+
+    /**
+     * Fires an event to the subscribed plugins.
+     *
+     * @param event the event
+     * @return true if the event was cancelled
+     */
+    boolean fireEvent(ClientEvent event)
+    {
+        return events.dispatch(event);
+    }
+
+    /**
+     * Delivers the coalesced events being held, as JourneyMap does after rendering each frame.
+     */
+    void endFrame()
+    {
+        events.endFrame();
     }
 
     @Override
     public void show(Displayable displayable)
     {
+        indexDisplayable(displayable);
         showDisplayable(displayable.getModId(), displayable.getDisplayType(), displayable.getId());
     }
 
@@ -109,23 +186,78 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
         log(String.format("Showed %s:%s:%s", modId, displayType, displayId));
     }
 
+    private void indexDisplayable(Displayable displayable)
+    {
+        if (displayable instanceof Overlay)
+        {
+            modOverlays.getUnchecked(displayable.getModId()).add((Overlay) displayable);
+        }
+        else if (displayable instanceof Waypoint)
+        {
+            waypoints.add((Waypoint) displayable);
+        }
+    }
+
+    private void unindexDisplayable(Displayable displayable)
+    {
+        if (displayable instanceof Overlay)
+        {
+            modOverlays.getUnchecked(displayable.getModId()).remove((Overlay) displayable);
+        }
+        else if (displayable instanceof Waypoint)
+        {
+            waypoints.remove((Waypoint) displayable);
+        }
+    }
+
     @Override
     public void remove(Displayable displayable)
     {
+        unindexDisplayable(displayable);
         modDisplayables.getUnchecked(displayable.getModId()).remove(displayable.getDisplayType(), displayable.getId());
     }
 
+    @Override
+    public void showAll(Collection<? extends Displayable> displayables)
+    {
+        // Index the whole batch first, then report once rather than per element
+        for (Displayable displayable : displayables)
+        {
+            modDisplayables.getUnchecked(displayable.getModId()).put(displayable.getDisplayType(), displayable.getId());
+            indexDisplayable(displayable);
+        }
+        log(String.format("Showed %s displayables", displayables.size()));
+    }
+
+    @Override
+    public void removeAll(Collection<? extends Displayable> displayables)
+    {
+        for (Displayable displayable : displayables)
+        {
+            modDisplayables.getUnchecked(displayable.getModId()).remove(displayable.getDisplayType(), displayable.getId());
+            unindexDisplayable(displayable);
+        }
+        log(String.format("Removed %s displayables", displayables.size()));
+    }
+
     @Override
     public void removeAll(String modId, DisplayType displayType)
     {
         modDisplayables.getUnchecked(modId).removeAll(displayType);
+        modOverlays.getUnchecked(modId).removeIf(overlay -> overlay.getDisplayType() == displayType);
+        if (displayType == DisplayType.Waypoint)
+        {
+            waypoints.removeIf(waypoint -> waypoint.getModId().equals(modId));
+        }
         log(String.format("Removed all %s:%s", modId, displayType));
     }
 
     @Override
     public void removeAll(String modId)
     {
-        modDisplayables.invalidateAll();
+        modDisplayables.invalidate(modId);
+        modOverlays.invalidate(modId);
+        waypoints.removeIf(waypoint -> waypoint.getModId().equals(modId));
         log(String.format("Removed all %s", modId));
     }
 
@@ -135,6 +267,12 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
         return modDisplayables.getUnchecked(displayable.getModId()).containsEntry(displayable.getDisplayType(), displayable.getId());
     }
 
+    @Override
+    public List<Overlay> getOverlays(String modId, ResourceKey<Level> dimension, AABB blockBounds, int minZoom, int maxZoom)
+    {
+        return modOverlays.getUnchecked(modId).query(dimension, blockBounds, minZoom, maxZoom);
+    }
+
     @Override
     public boolean playerAccepts(String modId, DisplayType displayType)
     {
@@ -188,26 +326,38 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
     @Override
     public List<Waypoint> getAllWaypoints()
     {
-        return null;
+        return waypoints.getAll();
     }
 
     @Override
     public List<Waypoint> getAllWaypoints(ResourceKey<Level> dim)
     {
-        return null;
+        return waypoints.getAll(dim);
     }
 
     @org.jetbrains.annotations.Nullable
     @Override
     public Waypoint getWaypoint(String modId, String displayId)
     {
-        return null;
+        return waypoints.get(modId, displayId);
     }
 
     @Override
     public List<Waypoint> getWaypoints(String modId)
     {
-        return null;
+        return waypoints.getByModId(modId);
+    }
+
+    @Override
+    public List<Waypoint> getNearestWaypoints(ResourceKey<Level> dimension, double x, double y, double z, int count)
+    {
+        return waypoints.getNearest(dimension, x, y, z, count);
+    }
+
+    @Override
+    public List<Waypoint> getWaypointsWithinRadius(ResourceKey<Level> dimension, double x, double y, double z, double radius)
+    {
+        return waypoints.getWithinRadius(dimension, x, y, z, radius);
     }
 
     @Override
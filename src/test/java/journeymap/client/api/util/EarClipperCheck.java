@@ -0,0 +1,228 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.model.PolygonMesh;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Headless check of {@link EarClipper}, through {@link PolygonHelper#triangulate(MapPolygonWithHoles)}: the
+ * triangles of each shape must cover exactly its area, hull minus holes, so none overlap and none are missing.
+ * Covers convex, concave, holed and degenerate shapes, and chunk outlines with holes pinched against the hull
+ * and each other.  Run with {@code ./gradlew triangulationCheck}; it throws on the first shape which fails.
+ */
+public class EarClipperCheck
+{
+    private static final int Y = 64;
+
+    public static void main(String[] args)
+    {
+        int shapes = 0;
+
+        // Convex
+        shapes += check("square", polygon(0, 0, 16, 0, 16, 16, 0, 16));
+        shapes += check("octagon", regular(0, 0, 100, 8));
+        shapes += check("circle", regular(1000, -1000, 500, 360));
+
+        // Concave
+        shapes += check("L", polygon(0, 0, 32, 0, 32, 16, 16, 16, 16, 48, 0, 48));
+        shapes += check("star", star(0, 0, 100, 30, 12));
+        shapes += check("comb", comb(20));
+
+        // Degenerate: collinear runs, a repeated point and a zero-width spike
+        shapes += check("collinear", polygon(0, 0, 8, 0, 16, 0, 24, 0, 24, 16, 12, 16, 0, 16, 0, 8));
+        shapes += check("repeated point", polygon(0, 0, 16, 0, 16, 0, 16, 16, 0, 16));
+        shapes += check("spike", polygon(0, 0, 16, 0, 16, 8, 40, 8, 16, 8, 16, 16, 0, 16));
+
+        // Holes
+        shapes += check("one hole", new MapPolygonWithHoles(polygon(0, 0, 64, 0, 64, 64, 0, 64),
+                Collections.singletonList(polygon(16, 16, 16, 48, 48, 48, 48, 16))));
+        final List<MapPolygon> holes = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            for (int j = 0; j < 5; j++)
+            {
+                holes.add(regular(100 + i * 200, 100 + j * 200, 60, 6 + i + j));
+            }
+        }
+        shapes += check("many holes", new MapPolygonWithHoles(polygon(0, 0, 1000, 0, 1000, 1000, 0, 1000), holes));
+
+        // Chunk outlines: a ring whose hole touches a notch in its hull at a corner, and random claims
+        final List<ChunkPos> ring = new ArrayList<>();
+        for (int x = 0; x < 3; x++)
+        {
+            for (int z = 0; z < 3; z++)
+            {
+                if (x != z || x == 0)
+                {
+                    ring.add(new ChunkPos(x, z));
+                }
+            }
+        }
+        shapes += checkChunks("pinched ring", ring);
+
+        final Random random = new Random(42);
+        for (int trial = 0; trial < 200; trial++)
+        {
+            final int size = 4 + random.nextInt(30);
+            final double fill = 0.4 + random.nextDouble() * 0.5;
+            final List<ChunkPos> chunks = new ArrayList<>();
+            for (int x = 0; x < size; x++)
+            {
+                for (int z = 0; z < size; z++)
+                {
+                    if (random.nextDouble() < fill)
+                    {
+                        chunks.add(new ChunkPos(x - size / 2, z - size / 2));
+                    }
+                }
+            }
+            shapes += checkChunks("random chunks " + trial, chunks);
+        }
+
+        System.out.println("EarClipperCheck: " + shapes + " shapes triangulated with the right area");
+    }
+
+    private static int checkChunks(String name, List<ChunkPos> chunks)
+    {
+        int count = 0;
+        for (MapPolygonWithHoles polygon : PolygonHelper.createChunksPolygon(chunks, Y))
+        {
+            count += check(name + " #" + count, polygon);
+        }
+        return count;
+    }
+
+    private static int check(String name, MapPolygon polygon)
+    {
+        return check(name, new MapPolygonWithHoles(polygon, null));
+    }
+
+    private static int check(String name, MapPolygonWithHoles polygon)
+    {
+        double expected = Math.abs(area(polygon.hull));
+        if (polygon.holes != null)
+        {
+            for (MapPolygon hole : polygon.holes)
+            {
+                expected -= Math.abs(area(hole));
+            }
+        }
+
+        final PolygonMesh mesh = PolygonHelper.triangulate(polygon);
+        final float[] v = mesh.vertices;
+        final int[] indices = mesh.indices;
+        double actual = 0;
+        for (int i = 0; i < indices.length; i += 3)
+        {
+            final int a = indices[i] * 2;
+            final int b = indices[i + 1] * 2;
+            final int c = indices[i + 2] * 2;
+            actual += Math.abs((v[b] - v[a]) * (double) (v[c + 1] - v[a + 1])
+                    - (v[b + 1] - v[a + 1]) * (double) (v[c] - v[a])) / 2;
+        }
+
+        if (Math.abs(actual - expected) > 1e-6 * Math.max(1, expected))
+        {
+            throw new AssertionError(name + ": triangles cover " + actual + ", expected " + expected + " for " + polygon);
+        }
+        return 1;
+    }
+
+    private static double area(MapPolygon polygon)
+    {
+        double sum = 0;
+        for (int i = 0, j = polygon.size() - 1; i < polygon.size(); j = i++)
+        {
+            sum += (double) polygon.getX(j) * polygon.getZ(i) - (double) polygon.getX(i) * polygon.getZ(j);
+        }
+        return sum / 2;
+    }
+
+    private static MapPolygon polygon(int... xz)
+    {
+        final int[] xs = new int[xz.length / 2];
+        final int[] zs = new int[xz.length / 2];
+        for (int i = 0; i < xs.length; i++)
+        {
+            xs[i] = xz[i * 2];
+            zs[i] = xz[i * 2 + 1];
+        }
+        return new MapPolygon(xs, zs, Y);
+    }
+
+    private static MapPolygon regular(int centerX, int centerZ, int radius, int sides)
+    {
+        return star(centerX, centerZ, radius, radius, sides);
+    }
+
+    /**
+     * A star with alternating outer and inner points, or a regular polygon when the radii are the same.
+     */
+    private static MapPolygon star(int centerX, int centerZ, int outer, int inner, int points)
+    {
+        final int count = (outer == inner) ? points : points * 2;
+        final int[] xs = new int[count];
+        final int[] zs = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            final double angle = 2 * Math.PI * i / count;
+            final int radius = (outer == inner || i % 2 == 0) ? outer : inner;
+            xs[i] = centerX + (int) Math.round(radius * Math.cos(angle));
+            zs[i] = centerZ + (int) Math.round(radius * Math.sin(angle));
+        }
+        return new MapPolygon(xs, zs, Y);
+    }
+
+    /**
+     * A comb with narrow teeth, which leaves few ears at a time.
+     */
+    private static MapPolygon comb(int teeth)
+    {
+        final int[] xs = new int[teeth * 4 + 2];
+        final int[] zs = new int[xs.length];
+        int n = 0;
+        for (int i = 0; i < teeth; i++)
+        {
+            xs[n] = i * 10;
+            zs[n++] = 100;
+            xs[n] = i * 10 + 4;
+            zs[n++] = 100;
+            xs[n] = i * 10 + 4;
+            zs[n++] = 10;
+            xs[n] = i * 10 + 10;
+            zs[n++] = 10;
+        }
+        xs[n] = teeth * 10;
+        zs[n++] = 0;
+        xs[n] = 0;
+        zs[n] = 0;
+        return new MapPolygon(xs, zs, Y);
+    }
+}